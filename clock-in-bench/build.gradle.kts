@@ -0,0 +1,44 @@
+// JMH benchmarks for the tool-app clock-in storage layer, run on a plain JVM.
+//
+//   ./gradlew :clock-in-bench:jmh                      # all benchmarks, 1 thread
+//   ./gradlew :clock-in-bench:jmh -PjmhThreads=4       # same, 4 benchmark threads
+//   ./gradlew :clock-in-bench:jmh -PjmhInclude=Legacy  # only benchmarks matching a regex
+plugins {
+    java
+    id("me.champeau.jmh") version "0.7.3"
+}
+
+repositories {
+    mavenCentral()
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+sourceSets {
+    main {
+        java {
+            // src/main/java holds the Context/SharedPreferences stand-ins,
+            // the storage classes are compiled straight from the app sources
+            srcDir("../tool-app/app/src/main/java")
+            include("android/**")
+            include("com/example/mcpdemo/ClockIn*.java")
+            include("com/example/mcpdemo/EpochDays.java")
+            include("com/example/mcpdemo/StreakIndex.java")
+            // Import/export codec, needs org.json and is not benchmarked
+            exclude("com/example/mcpdemo/ClockInTransfer.java")
+        }
+    }
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    threads.set(providers.gradleProperty("jmhThreads").map { it.toInt() }.orElse(1))
+    providers.gradleProperty("jmhInclude").orNull?.let { includes.set(listOf(it)) }
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+}
@@ -0,0 +1,41 @@
+package com.example.mcpdemo;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Context stand-in: a files directory plus one {@link MapSharedPreferences} per name
+ */
+final class BenchContext extends Context {
+
+    private final File mFilesDir;
+    private final Map<String, MapSharedPreferences> mPreferences = new HashMap<>();
+
+    BenchContext(File filesDir) {
+        this.mFilesDir = filesDir;
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    @Override
+    public synchronized SharedPreferences getSharedPreferences(String name, int mode) {
+        MapSharedPreferences prefs = mPreferences.get(name);
+        if (prefs == null) {
+            prefs = new MapSharedPreferences(new File(mFilesDir, name + ".xml"));
+            mPreferences.put(name, prefs);
+        }
+        return prefs;
+    }
+
+    @Override
+    public File getFilesDir() {
+        return mFilesDir;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.mcpdemo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ClockInManager} on the bitmap store, with {@code historyDays} consecutive days clocked in up to today.
+ * <p>
+ * {@link #clockInDate()} makes up a new day before the history on every call, so it measures a real write.
+ * It runs as single-shot batches of {@link #MAKE_UP_BATCH} writes (the score is the time per batch, per thread),
+ * and the store is reset and seeded again before each batch to keep the history size stable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ClockInManagerBenchmark {
+
+    static final int MAKE_UP_BATCH = 4096;
+
+    @Param({"30", "365", "3650"})
+    public int historyDays;
+
+    private ClockInManager mManager;
+    private String[] mHistory;
+    private int mYear;
+    private int mMonth;
+    private final AtomicInteger mNextMakeUpDay = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void openStore() throws IOException {
+        File dir = Files.createTempDirectory("clock-in-bench").toFile();
+        mManager = ClockInManager.getInstance(new BenchContext(dir));
+        int today = EpochDays.today();
+        mHistory = new String[historyDays];
+        for (int i = 0; i < historyDays; i++) {
+            mHistory[i] = EpochDays.format(today - i);
+        }
+        mYear = EpochDays.year(today);
+        mMonth = EpochDays.month(today);
+    }
+
+    @Setup(Level.Iteration)
+    public void seedHistory() {
+        int today = EpochDays.today();
+        int[] days = new int[historyDays];
+        for (int i = 0; i < historyDays; i++) {
+            days[i] = today - i;
+        }
+        mManager.resetClockInData();
+        mManager.clockInDates(days);
+        mNextMakeUpDay.set(today - historyDays);
+    }
+
+    // Each write adds a day, so writes run in fixed batches on a freshly seeded store
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(batchSize = MAKE_UP_BATCH)
+    @Measurement(batchSize = MAKE_UP_BATCH)
+    public void clockInDate() {
+        mManager.clockInDate(EpochDays.format(mNextMakeUpDay.getAndDecrement()));
+    }
+
+    @Benchmark
+    public boolean hasClockedIn() {
+        return mManager.hasClockedIn(mHistory[ThreadLocalRandom.current().nextInt(historyDays)]);
+    }
+
+    @Benchmark
+    public HashMap<Integer, Boolean> getMonthClockInData() {
+        return mManager.getMonthClockInData(mYear, mMonth);
+    }
+
+    @Benchmark
+    public int getConsecutiveClockInDays() {
+        return mManager.getConsecutiveClockInDays();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.mcpdemo;
+
+import android.content.SharedPreferences;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Baseline: the same workload as {@link ClockInManagerBenchmark} on {@link LegacyClockInManager}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LegacyClockInBenchmark {
+
+    @Param({"30", "365", "3650"})
+    public int historyDays;
+
+    private MapSharedPreferences mPreferences;
+    private LegacyClockInManager mManager;
+    private String[] mHistory;
+    private int mYear;
+    private int mMonth;
+    private final AtomicInteger mNextMakeUpDay = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void openStore() throws IOException {
+        File dir = Files.createTempDirectory("clock-in-bench").toFile();
+        mPreferences = new MapSharedPreferences(new File(dir, "clock_in_data.xml"));
+        mManager = new LegacyClockInManager(mPreferences);
+        int today = EpochDays.today();
+        mHistory = new String[historyDays];
+        for (int i = 0; i < historyDays; i++) {
+            mHistory[i] = EpochDays.format(today - i);
+        }
+        mYear = EpochDays.year(today);
+        mMonth = EpochDays.month(today);
+    }
+
+    @Setup(Level.Iteration)
+    public void seedHistory() {
+        SharedPreferences.Editor editor = mPreferences.edit().clear();
+        for (String date : mHistory) {
+            editor.putBoolean("clock_in_" + date, true);
+        }
+        editor.commit();
+        mNextMakeUpDay.set(EpochDays.today() - historyDays);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(batchSize = ClockInManagerBenchmark.MAKE_UP_BATCH)
+    @Measurement(batchSize = ClockInManagerBenchmark.MAKE_UP_BATCH)
+    public void clockInDate() {
+        mManager.clockInDate(EpochDays.format(mNextMakeUpDay.getAndDecrement()));
+    }
+
+    @Benchmark
+    public boolean hasClockedIn() {
+        return mManager.hasClockedIn(mHistory[ThreadLocalRandom.current().nextInt(historyDays)]);
+    }
+
+    @Benchmark
+    public HashMap<Integer, Boolean> getMonthClockInData() {
+        return mManager.getMonthClockInData(mYear, mMonth);
+    }
+
+    @Benchmark
+    public int getConsecutiveClockInDays() {
+        return mManager.getConsecutiveClockInDays();
+    }
+}
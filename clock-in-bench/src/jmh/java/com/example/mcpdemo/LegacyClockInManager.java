@@ -0,0 +1,58 @@
+package com.example.mcpdemo;
+
+import android.content.SharedPreferences;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * The original one-boolean-per-day SharedPreferences clock-in logic, kept as the benchmark baseline.
+ * The date format is per thread so multi-threaded runs do not corrupt it.
+ */
+final class LegacyClockInManager {
+
+    private static final String KEY_PREFIX = "clock_in_";
+
+    private final SharedPreferences mSharedPreferences;
+    private final ThreadLocal<SimpleDateFormat> mDateFormat =
+            ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyy-MM-dd", Locale.US));
+
+    LegacyClockInManager(SharedPreferences sharedPreferences) {
+        this.mSharedPreferences = sharedPreferences;
+    }
+
+    void clockInDate(String dateString) {
+        mSharedPreferences.edit()
+                .putBoolean(KEY_PREFIX + dateString, true)
+                .apply();
+    }
+
+    boolean hasClockedIn(String dateString) {
+        return mSharedPreferences.getBoolean(KEY_PREFIX + dateString, false);
+    }
+
+    HashMap<Integer, Boolean> getMonthClockInData(int year, int month) {
+        HashMap<Integer, Boolean> result = new HashMap<>();
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(year, month - 1, 1);
+        int lastDay = calendar.getActualMaximum(Calendar.DAY_OF_MONTH);
+        for (int day = 1; day <= lastDay; day++) {
+            calendar.set(Calendar.DAY_OF_MONTH, day);
+            String dateString = mDateFormat.get().format(calendar.getTime());
+            result.put(day, hasClockedIn(dateString));
+        }
+        return result;
+    }
+
+    int getConsecutiveClockInDays() {
+        int count = 0;
+        Calendar calendar = Calendar.getInstance();
+        while (hasClockedIn(mDateFormat.get().format(calendar.getTime()))) {
+            count++;
+            calendar.add(Calendar.DAY_OF_MONTH, -1);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.mcpdemo;
+
+import android.content.SharedPreferences;
+
+import java.io.FileOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SharedPreferences stand-in with the same write cost model as the platform implementation:
+ * every commit or apply serializes the whole map as XML and rewrites the file.
+ * The write happens on the calling thread, so the benchmark sees the cost apply() hands to the disk thread.
+ */
+final class MapSharedPreferences implements SharedPreferences {
+
+    private final File mFile;
+    private final ConcurrentHashMap<String, Object> mMap = new ConcurrentHashMap<>();
+
+    MapSharedPreferences(File file) {
+        this.mFile = file;
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        return new HashMap<>(mMap);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        Object value = mMap.get(key);
+        return value instanceof Boolean ? (Boolean) value : defValue;
+    }
+
+    @Override
+    public Editor edit() {
+        return new MapEditor();
+    }
+
+    private synchronized void writeToDisk() {
+        StringBuilder xml = new StringBuilder("<?xml version='1.0' encoding='utf-8' standalone='yes' ?>\n<map>\n");
+        for (Map.Entry<String, Object> entry : mMap.entrySet()) {
+            xml.append("    <boolean name=\"").append(entry.getKey())
+                    .append("\" value=\"").append(entry.getValue()).append("\" />\n");
+        }
+        xml.append("</map>\n");
+        try (FileOutputStream out = new FileOutputStream(mFile)) {
+            out.write(xml.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private final class MapEditor implements Editor {
+
+        private final Map<String, Object> mPuts = new HashMap<>();
+        private boolean mClear;
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            mPuts.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor remove(String key) {
+            // Same marker trick as the platform editor
+            mPuts.put(key, this);
+            return this;
+        }
+
+        @Override
+        public Editor clear() {
+            mClear = true;
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            if (mClear) {
+                mMap.clear();
+            }
+            for (Map.Entry<String, Object> put : mPuts.entrySet()) {
+                if (put.getValue() == this) {
+                    mMap.remove(put.getKey());
+                } else {
+                    mMap.put(put.getKey(), put.getValue());
+                }
+            }
+            writeToDisk();
+            return true;
+        }
+
+        @Override
+        public void apply() {
+            commit();
+        }
+    }
+}
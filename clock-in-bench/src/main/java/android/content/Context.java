@@ -0,0 +1,17 @@
+package android.content;
+
+import java.io.File;
+
+/**
+ * Plain-JVM stand-in for the parts of {@code android.content.Context} used by the clock-in storage layer
+ */
+public abstract class Context {
+
+    public static final int MODE_PRIVATE = 0;
+
+    public abstract Context getApplicationContext();
+
+    public abstract SharedPreferences getSharedPreferences(String name, int mode);
+
+    public abstract File getFilesDir();
+}
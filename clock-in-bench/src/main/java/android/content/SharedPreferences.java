@@ -0,0 +1,27 @@
+package android.content;
+
+import java.util.Map;
+
+/**
+ * Plain-JVM stand-in for the parts of {@code android.content.SharedPreferences} used by the clock-in storage layer
+ */
+public interface SharedPreferences {
+
+    interface Editor {
+        Editor putBoolean(String key, boolean value);
+
+        Editor remove(String key);
+
+        Editor clear();
+
+        boolean commit();
+
+        void apply();
+    }
+
+    Map<String, ?> getAll();
+
+    boolean getBoolean(String key, boolean defValue);
+
+    Editor edit();
+}
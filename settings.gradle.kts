@@ -1,4 +1,8 @@
+// Root build.gradle.kts for composite build
 rootProject.name = "mobile-mcp"
 
 includeBuild("llm-app")
 includeBuild("tool-app")
+
+// Plain-JVM JMH benchmarks for the tool-app clock-in storage layer
+include("clock-in-bench")
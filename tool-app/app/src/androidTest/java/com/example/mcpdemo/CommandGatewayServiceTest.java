@@ -0,0 +1,92 @@
+package com.example.mcpdemo;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.IBinder;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for the gateway service over its bound transport
+ */
+@RunWith(AndroidJUnit4.class)
+public class CommandGatewayServiceTest {
+
+    private final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    private ServiceConnection connection;
+
+    /**
+     * Bind the gateway and wait for its binder
+     */
+    private IBinder bind() throws InterruptedException {
+        CountDownLatch connected = new CountDownLatch(1);
+        IBinder[] binder = new IBinder[1];
+        connection = new ServiceConnection() {
+            @Override
+            public void onServiceConnected(ComponentName name, IBinder service) {
+                binder[0] = service;
+                connected.countDown();
+            }
+
+            @Override
+            public void onServiceDisconnected(ComponentName name) {
+            }
+        };
+        assertTrue(context.bindService(new Intent(context, CommandGatewayService.class), connection,
+                Context.BIND_AUTO_CREATE));
+        assertTrue("Gateway did not bind", connected.await(5, TimeUnit.SECONDS));
+        return binder[0];
+    }
+
+    private void unbind() {
+        if (connection != null) {
+            context.unbindService(connection);
+            connection = null;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        unbind();
+    }
+
+    @Test
+    public void repeatedRequestId_isReplayedByANewServiceInstance() throws Exception {
+        ClockInManager clockInManager = ClockInManager.getInstance(context);
+        clockInManager.resetClockInData();
+        String date = "2001-02-03";
+        String request = "{\"id\":\"replay-" + System.nanoTime() + "\",\"capability\":{\"id\":\"make_up_clock_in\","
+                + "\"input\":{\"date\":\"" + date + "\"}}}";
+
+        IBinder first = bind();
+        String response = IMcpGateway.Stub.asInterface(first).call(request);
+        assertTrue(response, response.contains("\"status\":\"success\""));
+        assertTrue(clockInManager.hasClockedIn(date));
+
+        // Unbound, the service is destroyed, as after a cold-mode request
+        unbind();
+        clockInManager.resetClockInData();
+        IBinder second = bind();
+        for (int i = 0; i < 50 && second == first; i++) {
+            unbind();
+            Thread.sleep(100);
+            second = bind();
+        }
+        assertNotSame("Service was not recreated", first, second);
+
+        assertEquals(response, IMcpGateway.Stub.asInterface(second).call(request));
+        assertFalse("Replayed request ran again", clockInManager.hasClockedIn(date));
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.mcpdemo;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for the request envelope parser, which reads through android.util.JsonReader
+ */
+@RunWith(AndroidJUnit4.class)
+public class McpRequestTest {
+
+    @Test
+    public void parse_readsNestedInput() throws Exception {
+        McpRequest request = McpRequest.parse("{\"id\":\"r1\",\"capability\":{\"id\":\"query_clock_in\","
+                + "\"input\":{\"date\":\"2024-01-31\",\"limit\":3,\"ratio\":0.5,\"flags\":[true,null],"
+                + "\"nested\":{\"a\":\"b\"}}}}");
+        assertEquals("r1", request.mId);
+        assertEquals("query_clock_in", request.mCapabilityId);
+        assertNull(request.mInputError);
+        assertNull(request.mBatch);
+        JSONObject input = request.mInput;
+        assertEquals("2024-01-31", input.getString("date"));
+        // Integers stay integral, so the validator can tell them from fractions
+        assertEquals(3L, input.get("limit"));
+        assertEquals(0.5, input.get("ratio"));
+        JSONArray flags = input.getJSONArray("flags");
+        assertEquals(Boolean.TRUE, flags.get(0));
+        assertTrue(flags.isNull(1));
+        assertEquals("b", input.getJSONObject("nested").getString("a"));
+    }
+
+    @Test
+    public void parse_readsLegacyStringInput() throws Exception {
+        McpRequest request = McpRequest.parse("{\"id\":\"r1\",\"capability\":{\"id\":\"query_clock_in\","
+                + "\"input\":\"{\\\"date\\\":\\\"2024-01-31\\\"}\"}}");
+        assertNull(request.mInputError);
+        assertEquals("2024-01-31", request.mInput.getString("date"));
+
+        request = McpRequest.parse("{\"id\":\"r1\",\"capability\":{\"id\":\"query_clock_in\",\"input\":\"\"}}");
+        assertNull(request.mInputError);
+        assertEquals(0, request.mInput.length());
+    }
+
+    @Test
+    public void parse_defaultsMissingOrNullInputToEmpty() throws Exception {
+        assertEquals(0, McpRequest.parse("{\"id\":\"r1\",\"capability\":{\"id\":\"c\"}}").mInput.length());
+        McpRequest request = McpRequest.parse("{\"id\":\"r1\",\"capability\":{\"id\":\"c\",\"input\":null}}");
+        assertNull(request.mInputError);
+        assertEquals(0, request.mInput.length());
+    }
+
+    @Test
+    public void parse_reportsBadInputAndKeepsReading() throws Exception {
+        String[] inputs = {"42", "[1,2]", "\"not json\"", "\"{} trailing\"", "\"[1]\"",
+                "{\"a\":{\"b\":[1e999,2]},\"c\":3}", "\"{\\\"a\\\":1e999}\""};
+        for (String input : inputs) {
+            McpRequest request = McpRequest.parse("{\"id\":\"r1\",\"capability\":{\"input\":" + input
+                    + ",\"id\":\"c\"},\"stream\":true}");
+            assertEquals(input, "input must be a JSON object.", request.mInputError);
+            // Members after the bad input are still read
+            assertEquals(input, "c", request.mCapabilityId);
+            assertTrue(input, request.mStream);
+        }
+    }
+
+    @Test
+    public void parse_skipsUnknownMembers() throws Exception {
+        McpRequest request = McpRequest.parse("{\"extra\":{\"id\":\"x\",\"batch\":[1]},\"id\":\"r1\","
+                + "\"capability\":{\"version\":[1,{\"id\":\"y\"}],\"id\":\"c\",\"meta\":{\"input\":{}}},"
+                + "\"more\":[[],{}],\"stream\":\"yes\",\"mode\":1}");
+        assertEquals("r1", request.mId);
+        assertEquals("c", request.mCapabilityId);
+        assertEquals(0, request.mInput.length());
+        assertFalse(request.mStream);
+        assertEquals("sequential", request.mMode);
+    }
+
+    @Test
+    public void parse_readsEnvelopeOptions() throws Exception {
+        McpRequest request = McpRequest.parse("{\"id\":\"r1\",\"capability\":{\"id\":\"c\"},"
+                + "\"max_inline_response_bytes\":4096,\"stream\":true}");
+        assertEquals(4096, request.mMaxInlineResponse);
+        assertTrue(request.mStream);
+
+        request = McpRequest.parse("{\"id\":\"r1\",\"capability\":{\"id\":\"c\"},\"max_inline_response_bytes\":-5}");
+        assertEquals(0, request.mMaxInlineResponse);
+        assertFalse(request.mStream);
+    }
+
+    @Test
+    public void parse_readsBatch() throws Exception {
+        McpRequest request = McpRequest.parse("{\"id\":\"b1\",\"mode\":\"parallel\",\"stop_on_failure\":true,"
+                + "\"batch\":[{\"id\":\"e1\",\"capability\":{\"id\":\"c1\",\"input\":{\"n\":1}}},"
+                + "{\"capability\":{\"id\":\"c2\",\"input\":7}},"
+                + "{\"id\":\"e3\",\"batch\":[{\"id\":\"nested\"}],\"capability\":{\"id\":\"c3\"}}]}");
+        assertEquals("b1", request.mId);
+        assertNull(request.mCapabilityId);
+        assertEquals("parallel", request.mMode);
+        assertTrue(request.mStopOnFailure);
+        assertEquals(3, request.mBatch.size());
+
+        McpRequest first = request.mBatch.get(0);
+        assertEquals("e1", first.mId);
+        assertEquals("c1", first.mCapabilityId);
+        assertEquals(1L, first.mInput.get("n"));
+        McpRequest second = request.mBatch.get(1);
+        assertEquals("", second.mId);
+        assertEquals("input must be a JSON object.", second.mInputError);
+        // Batches do not nest
+        McpRequest third = request.mBatch.get(2);
+        assertNull(third.mBatch);
+        assertEquals("c3", third.mCapabilityId);
+    }
+
+    @Test
+    public void parse_marksMissingCapability() throws Exception {
+        assertNull(McpRequest.parse("{\"id\":\"r1\"}").mCapabilityId);
+        assertEquals("", McpRequest.parse("{\"id\":\"r1\",\"capability\":{}}").mCapabilityId);
+        assertEquals("", McpRequest.parse("{\"id\":7,\"capability\":{\"id\":\"c\"}}").mId);
+    }
+
+    @Test
+    public void parse_rejectsMalformedEnvelopes() {
+        String[] requests = {null, "", "[]", "\"r1\"", "{\"id\":\"r1\"",
+                // A syntax error inside the input fails the envelope instead of becoming an input error
+                "{\"id\":\"r1\",\"capability\":{\"id\":\"c\",\"input\":{\"a\":}}}",
+                "{\"id\":\"r1\",\"max_inline_response_bytes\":1.5}"};
+        for (String json : requests) {
+            try {
+                McpRequest.parse(json);
+                fail("Parsed " + json);
+            } catch (IOException expected) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void idOf_readsIdOnly() {
+        assertEquals("r1", McpRequest.idOf("{\"capability\":{\"id\":\"c\"},\"id\":\"r1\",\"batch\":"));
+        assertEquals("", McpRequest.idOf("{\"id\":1}"));
+        assertEquals("", McpRequest.idOf("not json"));
+        assertEquals("", McpRequest.idOf(null));
+    }
+}
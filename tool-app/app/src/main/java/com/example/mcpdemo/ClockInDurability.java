@@ -0,0 +1,36 @@
+package com.example.mcpdemo;
+
+import java.util.Locale;
+
+/**
+ * How far a clock-in has to get before the writer is acknowledged, from cheapest to safest
+ */
+public enum ClockInDurability {
+    /** Visible to readers, the journal write is still queued; lost if the process dies */
+    MEMORY,
+    /** Written to the journal file; survives the process dying, not a power loss */
+    WRITTEN,
+    /** Written and flushed to the storage device */
+    FSYNCED;
+
+    /**
+     * Name used in gateway requests and responses, e.g. "fsynced"
+     */
+    public String wireName() {
+        return name().toLowerCase(Locale.US);
+    }
+
+    /**
+     * Parse a wire name
+     *
+     * @return The level, or null if {@code name} is not a known level
+     */
+    public static ClockInDurability fromWireName(String name) {
+        for (ClockInDurability durability : values()) {
+            if (durability.wireName().equals(name)) {
+                return durability;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,385 @@
+package com.example.mcpdemo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only clock-in event log.
+ * <p>
+ * Every clock-in and make-up is one fixed-size record. The log belongs to one snapshot generation:
+ * records are only replayed on top of the snapshot with the same generation, so a compaction or reset
+ * that has written a newer snapshot makes the old log obsolete even if the log was not reset yet.
+ * <p>
+ * Replay reads the file through a {@link MappedByteBuffer} and stops at the first incomplete or
+ * corrupt record, which is where a crash interrupted the last append; the log is truncated there.
+ * <p>
+ * Layout: magic, version, generation (long), then records of
+ * type (int), epoch day (int), time in millis (long), CRC32 of the previous 16 bytes (int), reserved (int).
+ * <p>
+ * Appends never touch the file: records are queued and a writer thread commits everything queued
+ * so far with one write, and one fsync if anybody asked for it (group commit). {@link #await}
+ * blocks until the records appended before the call reach the requested {@link ClockInDurability}.
+ * A failed write keeps its records queued and is retried; waiters get the error meanwhile.
+ */
+final class ClockInJournal {
+
+    static final String FILE_NAME = "clock_in.log";
+
+    /** Clock-in recorded on the day itself */
+    static final int TYPE_CLOCK_IN = 1;
+    /** Clock-in recorded for an earlier or later day */
+    static final int TYPE_MAKE_UP = 2;
+
+    private static final int MAGIC = 0x4D43494A; // "MCIJ"
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 24;
+    private static final long RETRY_DELAY_MS = 1000;
+
+    /**
+     * Receives replayed records in log order
+     */
+    interface Visitor {
+        void onRecord(int type, int epochDay, long timeMillis);
+    }
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final CRC32 mCrc = new CRC32();
+    // Held by whoever touches the file after open: the writer thread and reset
+    private final Object mIoLock = new Object();
+    private final Thread mWriter;
+    private long mGeneration;
+
+    // State below is guarded by this
+    private ByteBuffer mPending = ByteBuffer.allocate(64 * RECORD_SIZE);
+    private ByteBuffer mSpare = ByteBuffer.allocate(64 * RECORD_SIZE);
+    private int mPendingCount;
+    // Records of this generation in the file
+    private int mWrittenCount;
+    // Sequence numbers count every record ever appended, across generations
+    private long mAppendedSeq;
+    private long mWrittenSeq;
+    private long mSyncedSeq;
+    private long mSyncRequestedSeq;
+    private IOException mFailure;
+    // Uptime in millis before which a failed write is not retried
+    private long mRetryAtMillis;
+    private boolean mClosed;
+
+    private ClockInJournal(RandomAccessFile file) {
+        this.mFile = file;
+        this.mChannel = file.getChannel();
+        this.mWriter = new Thread(this::writeLoop, "ClockInJournal");
+        this.mWriter.setDaemon(true);
+    }
+
+    /**
+     * Open the log and replay the records that belong to {@code generation}.
+     * A log of another generation, or without a valid header, is reset to an empty log of {@code generation}.
+     */
+    static ClockInJournal open(File dir, long generation, Visitor visitor) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(new File(dir, FILE_NAME), "rw");
+        ClockInJournal journal = new ClockInJournal(file);
+        try {
+            journal.replay(generation, visitor);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        journal.mWriter.start();
+        return journal;
+    }
+
+    private void replay(long generation, Visitor visitor) throws IOException {
+        long length = mChannel.size();
+        if (length < HEADER_SIZE) {
+            reset(generation);
+            return;
+        }
+        MappedByteBuffer buffer = mChannel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != generation) {
+            reset(generation);
+            return;
+        }
+        mGeneration = generation;
+        int count = 0;
+        while (buffer.remaining() >= RECORD_SIZE) {
+            int position = buffer.position();
+            int type = buffer.getInt();
+            int epochDay = buffer.getInt();
+            long timeMillis = buffer.getLong();
+            int crc = buffer.getInt();
+            buffer.getInt();
+            if (crc != checksum(type, epochDay, timeMillis) || (type != TYPE_CLOCK_IN && type != TYPE_MAKE_UP)) {
+                buffer.position(position);
+                break;
+            }
+            visitor.onRecord(type, epochDay, timeMillis);
+            count++;
+        }
+        mWrittenCount = count;
+        // Drop a torn tail so the next append follows the last good record
+        mChannel.truncate(HEADER_SIZE + (long) count * RECORD_SIZE);
+    }
+
+    /**
+     * Queue a record for the end of the log
+     */
+    synchronized void append(int type, int epochDay, long timeMillis) throws IOException {
+        ensureOpen();
+        reserve(1);
+        putRecord(type, epochDay, timeMillis);
+        mPendingCount++;
+        mAppendedSeq++;
+        notifyAll();
+    }
+
+    /**
+     * Queue one record per day, committed together
+     *
+     * @param epochDays Days to record, the first {@code count} entries are used
+     */
+    synchronized void appendAll(int type, int[] epochDays, int count, long timeMillis) throws IOException {
+        ensureOpen();
+        reserve(count);
+        for (int i = 0; i < count; i++) {
+            putRecord(type, epochDays[i], timeMillis);
+        }
+        mPendingCount += count;
+        mAppendedSeq += count;
+        notifyAll();
+    }
+
+    /**
+     * Wait until every record appended so far is at least as durable as {@code durability}
+     *
+     * @throws IOException if the log could not be written or was closed first
+     */
+    synchronized void await(ClockInDurability durability) throws IOException {
+        if (durability == ClockInDurability.MEMORY) {
+            return;
+        }
+        boolean sync = durability == ClockInDurability.FSYNCED;
+        long target = mAppendedSeq;
+        if (sync && mSyncRequestedSeq < target) {
+            mSyncRequestedSeq = target;
+            notifyAll();
+        }
+        while ((sync ? mSyncedSeq : mWrittenSeq) < target) {
+            if (mFailure != null) {
+                throw new IOException("Cannot write " + FILE_NAME, mFailure);
+            }
+            if (mClosed) {
+                throw new IOException(FILE_NAME + " is closed");
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    /**
+     * Discard all records, including queued ones, and start an empty log for {@code generation}.
+     * Callers must have made the discarded records durable elsewhere, e.g. in a snapshot.
+     */
+    void reset(long generation) throws IOException {
+        synchronized (mIoLock) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(generation).flip();
+            mChannel.truncate(0);
+            mChannel.write(header, 0);
+            synchronized (this) {
+                mGeneration = generation;
+                mPending.clear();
+                mPendingCount = 0;
+                mWrittenCount = 0;
+                mWrittenSeq = mAppendedSeq;
+                mSyncedSeq = mAppendedSeq;
+                mFailure = null;
+                notifyAll();
+            }
+        }
+    }
+
+    synchronized long generation() {
+        return mGeneration;
+    }
+
+    /**
+     * Number of records in this generation, written or queued
+     */
+    synchronized int recordCount() {
+        return mWrittenCount + mPendingCount;
+    }
+
+    /**
+     * Write the queued records, stop the writer thread and close the file
+     */
+    void close() throws IOException {
+        synchronized (this) {
+            mClosed = true;
+            notifyAll();
+        }
+        boolean interrupted = false;
+        while (mWriter.isAlive()) {
+            try {
+                mWriter.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        mFile.close();
+    }
+
+    private void writeLoop() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    // Appends notify too, so a failed write waits out its whole back-off in this loop
+                    while (!mClosed && (!hasWork() || retryDelay() > 0)) {
+                        long delay = retryDelay();
+                        if (delay > 0) {
+                            wait(delay);
+                        } else {
+                            wait();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    mClosed = true;
+                }
+                if (mClosed && (!hasWork() || mFailure != null)) {
+                    notifyAll();
+                    return;
+                }
+            }
+            commit();
+        }
+    }
+
+    /**
+     * Millis until a failed write may be retried, 0 if there is no failure or a reset cleared it
+     */
+    private long retryDelay() {
+        return mFailure != null ? Math.max(0, mRetryAtMillis - uptimeMillis()) : 0;
+    }
+
+    private static long uptimeMillis() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    private boolean hasWork() {
+        return mPendingCount > 0 || mSyncRequestedSeq > mSyncedSeq;
+    }
+
+    /**
+     * Write everything queued so far with one write, then fsync once if any waiter asked for it
+     */
+    private void commit() {
+        synchronized (mIoLock) {
+            ByteBuffer batch;
+            int count;
+            long seq;
+            boolean sync;
+            long position;
+            synchronized (this) {
+                batch = mPending;
+                mPending = mSpare;
+                mSpare = batch;
+                batch.flip();
+                count = mPendingCount;
+                mPendingCount = 0;
+                seq = mAppendedSeq;
+                sync = mSyncRequestedSeq > mSyncedSeq;
+                position = HEADER_SIZE + (long) mWrittenCount * RECORD_SIZE;
+            }
+            try {
+                while (batch.hasRemaining()) {
+                    position += mChannel.write(batch, position);
+                }
+                if (sync) {
+                    mChannel.force(false);
+                }
+                synchronized (this) {
+                    mWrittenCount += count;
+                    mWrittenSeq = Math.max(mWrittenSeq, seq);
+                    if (sync) {
+                        mSyncedSeq = Math.max(mSyncedSeq, seq);
+                    }
+                    mFailure = null;
+                    batch.clear();
+                    notifyAll();
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    // Put the batch back in front of anything queued meanwhile and retry later
+                    batch.rewind();
+                    ByteBuffer pending = ByteBuffer.allocate(Math.max(batch.capacity(),
+                            batch.remaining() + mPending.position()));
+                    mPending.flip();
+                    pending.put(batch).put(mPending);
+                    mPending = pending;
+                    mSpare = ByteBuffer.allocate(mSpare.capacity());
+                    mPendingCount += count;
+                    mFailure = e;
+                    mRetryAtMillis = uptimeMillis() + RETRY_DELAY_MS;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (mClosed) {
+            throw new IOException(FILE_NAME + " is closed");
+        }
+    }
+
+    /**
+     * Make room in the queue for {@code count} more records
+     */
+    private void reserve(int count) {
+        if (mPending.remaining() >= count * RECORD_SIZE) {
+            return;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(mPending.capacity() * 2,
+                mPending.position() + count * RECORD_SIZE));
+        mPending.flip();
+        grown.put(mPending);
+        mPending = grown;
+    }
+
+    private void putRecord(int type, int epochDay, long timeMillis) {
+        mPending.putInt(type)
+                .putInt(epochDay)
+                .putLong(timeMillis)
+                .putInt(checksum(type, epochDay, timeMillis))
+                .putInt(0);
+    }
+
+    private int checksum(int type, int epochDay, long timeMillis) {
+        mCrc.reset();
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            mCrc.update(type >>> shift);
+        }
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            mCrc.update(epochDay >>> shift);
+        }
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            mCrc.update((int) (timeMillis >>> shift));
+        }
+        return (int) mCrc.getValue();
+    }
+}
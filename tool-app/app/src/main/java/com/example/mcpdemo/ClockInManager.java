@@ -3,58 +3,249 @@ package com.example.mcpdemo;
 import android.content.Context;
 import android.content.SharedPreferences;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
- * Clock In Manager: Handles storage and query of clock-in data
+ * Clock In Manager: Handles storage and query of clock-in data.
+ * <p>
+ * One instance per process, shared by the UI and the gateway service, so both see the same
+ * in-memory data. Writers notify {@link OnClockInChangedListener}s of the dates that changed.
+ * <p>
+ * All methods are safe to call from any thread; queries never block on writers.
  */
 public class ClockInManager {
 
+    /**
+     * Listener for clock-in changes. Called on the thread that made the change.
+     */
+    public interface OnClockInChangedListener {
+        /**
+         * Dates became clocked in
+         *
+         * @param epochDays Days since 1970-01-01 that were not clocked in before, shared by all listeners
+         */
+        void onClockInChanged(int[] epochDays);
+
+        /**
+         * All clock-in data was cleared
+         */
+        void onClockInDataReset();
+    }
+
     private static final String PREF_NAME = "clock_in_data";
+    // Legacy per-day keys, migrated into the bitmap store on first open
     private static final String KEY_PREFIX = "clock_in_";
-    private static final String DATE_FORMAT = "yyyy-MM-dd";
-    private final SharedPreferences mSharedPreferences;
-    private final SimpleDateFormat mDateFormat;
+    private static final String KEY_MIGRATED = "bitmap_migrated";
+    private static final String STORE_DIR = "clock_in";
+
+    private static ClockInManager sInstance;
+
+    private final ClockInStore mStore;
+    private final CopyOnWriteArrayList<OnClockInChangedListener> mListeners = new CopyOnWriteArrayList<>();
+    // Latest reset requested with resetClockInDataAsync, writes wait for it so it cannot wipe them
+    private volatile CompletableFuture<Void> mPendingReset;
+
+    private ClockInManager(ClockInStore store) {
+        this.mStore = store;
+    }
+
+    /**
+     * Get the process-wide clock-in manager, opening the store on first use
+     */
+    public static synchronized ClockInManager getInstance(Context context) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            SharedPreferences prefs = appContext.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+            try {
+                ClockInStore store = ClockInStore.open(new File(appContext.getFilesDir(), STORE_DIR));
+                if (!prefs.getBoolean(KEY_MIGRATED, false)) {
+                    migrateLegacyKeys(prefs, store);
+                }
+                sInstance = new ClockInManager(store);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open clock-in store", e);
+            }
+        }
+        return sInstance;
+    }
 
-    public ClockInManager(Context context) {
-        this.mSharedPreferences = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
-        this.mDateFormat = new SimpleDateFormat(DATE_FORMAT, Locale.getDefault());
+    public void addOnClockInChangedListener(OnClockInChangedListener listener) {
+        mListeners.addIfAbsent(listener);
+    }
+
+    public void removeOnClockInChangedListener(OnClockInChangedListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Move legacy clock_in_yyyy-MM-dd booleans into the bitmap store, then drop them from prefs.
+     * The prefs kept no time or type, so the days are imported without either.
+     */
+    private static void migrateLegacyKeys(SharedPreferences prefs, ClockInStore store) throws IOException {
+        SharedPreferences.Editor editor = prefs.edit();
+        int[] days = new int[16];
+        int count = 0;
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith(KEY_PREFIX)) {
+                continue;
+            }
+            int epochDay;
+            try {
+                epochDay = EpochDays.parse(key.substring(KEY_PREFIX.length()));
+            } catch (IllegalArgumentException e) {
+                // Not a date key, leave it alone
+                continue;
+            }
+            if (Boolean.TRUE.equals(entry.getValue())) {
+                if (count == days.length) {
+                    days = Arrays.copyOf(days, count * 2);
+                }
+                days[count++] = epochDay;
+            }
+            editor.remove(key);
+        }
+        store.importUntimed(Arrays.copyOf(days, count));
+        editor.putBoolean(KEY_MIGRATED, true).apply();
     }
 
     /**
      * Reset/Clear all clock-in data
      */
     public void resetClockInData() {
-        mSharedPreferences.edit().clear().apply();
+        try {
+            mStore.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (OnClockInChangedListener listener : mListeners) {
+            listener.onClockInDataReset();
+        }
     }
 
     /**
-     * Get today's date string
+     * Reset/Clear all clock-in data on {@code executor}. Clock-ins recorded after this call wait for the
+     * clear, so it never wipes them.
+     *
+     * @return Completes once the data is cleared, exceptionally with an UncheckedIOException if it could not be
      */
-    private String getTodayString() {
-        return mDateFormat.format(new Date());
+    public CompletableFuture<Void> resetClockInDataAsync(Executor executor) {
+        CompletableFuture<Void> reset = new CompletableFuture<>();
+        mPendingReset = reset;
+        try {
+            executor.execute(() -> {
+                try {
+                    resetClockInData();
+                    reset.complete(null);
+                } catch (RuntimeException e) {
+                    reset.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            reset.completeExceptionally(e);
+            throw e;
+        }
+        return reset;
+    }
+
+    private void awaitPendingReset() {
+        CompletableFuture<Void> reset = mPendingReset;
+        if (reset == null) {
+            return;
+        }
+        try {
+            reset.join();
+        } catch (CompletionException e) {
+            // Reported to whoever asked for the reset, the write goes ahead
+        }
     }
 
     /**
      * Record clock-in (default for today)
      */
     public void clockInToday() {
-        clockInDate(getTodayString());
+        clockInDate(EpochDays.today());
     }
 
     /**
      * Record clock-in for a specific date
      *
      * @param dateString Date string, format: yyyy-MM-dd
+     * @throws IllegalArgumentException if the date is malformed
      */
     public void clockInDate(String dateString) {
-        mSharedPreferences.edit()
-                .putBoolean(KEY_PREFIX + dateString, true)
-                .apply();
+        clockInDate(EpochDays.parse(dateString));
+    }
+
+    /**
+     * Record clock-in for a specific date
+     *
+     * @param epochDay Days since 1970-01-01
+     */
+    public void clockInDate(int epochDay) {
+        awaitPendingReset();
+        try {
+            int type = epochDay == EpochDays.today() ? ClockInJournal.TYPE_CLOCK_IN : ClockInJournal.TYPE_MAKE_UP;
+            if (!mStore.set(epochDay, type)) {
+                return;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        notifyChanged(new int[]{epochDay});
+    }
+
+    /**
+     * Record make-up clock-ins for several dates, touching storage once
+     *
+     * @param epochDays Days since 1970-01-01
+     * @return Number of dates that were not clocked in before
+     */
+    public int clockInDates(int[] epochDays) {
+        awaitPendingReset();
+        int[] added;
+        try {
+            added = mStore.setAll(epochDays, ClockInJournal.TYPE_MAKE_UP);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (added.length > 0) {
+            notifyChanged(added);
+        }
+        return added.length;
+    }
+
+    /**
+     * Wait until every clock-in recorded so far is at least as durable as {@code durability}.
+     * Clock-ins are applied in memory right away and written in the background; callers that need
+     * an honest acknowledgement wait here, concurrent waiters share one journal write and fsync.
+     *
+     * @return The level reached: {@code durability}, or {@link ClockInDurability#MEMORY} if the
+     * journal could not be written (the write is retried in the background)
+     */
+    public ClockInDurability awaitDurability(ClockInDurability durability) {
+        try {
+            mStore.await(durability);
+            return durability;
+        } catch (IOException e) {
+            return ClockInDurability.MEMORY;
+        }
+    }
+
+    private void notifyChanged(int[] epochDays) {
+        for (OnClockInChangedListener listener : mListeners) {
+            listener.onClockInChanged(epochDays);
+        }
     }
 
     /**
@@ -62,16 +253,57 @@ public class ClockInManager {
      *
      * @param dateString Date string, format: yyyy-MM-dd
      * @return true if clocked in, false otherwise
+     * @throws IllegalArgumentException if the date is malformed
      */
     public boolean hasClockedIn(String dateString) {
-        return mSharedPreferences.getBoolean(KEY_PREFIX + dateString, false);
+        return mStore.get(EpochDays.parse(dateString));
+    }
+
+    /**
+     * Query if clocked in on a specific date
+     *
+     * @param epochDay Days since 1970-01-01
+     */
+    public boolean hasClockedIn(int epochDay) {
+        return mStore.get(epochDay);
     }
 
     /**
      * Query if clocked in today
      */
     public boolean hasClockedInToday() {
-        return hasClockedIn(getTodayString());
+        return mStore.get(EpochDays.today());
+    }
+
+    /**
+     * Get clock-ins for a range of dates
+     *
+     * @param fromEpochDay First day (inclusive)
+     * @param toEpochDay   Last day (inclusive)
+     * @return Bitset where bit i is set if day {@code fromEpochDay + i} is clocked in
+     */
+    public long[] getClockInRange(int fromEpochDay, int toEpochDay) {
+        return mStore.getRange(fromEpochDay, toEpochDay);
+    }
+
+    /**
+     * Get when a date was clocked in
+     *
+     * @param epochDay Days since 1970-01-01
+     * @return Time in millis, {@link ClockInTimeIndex#UNKNOWN_TIME} if not clocked in or recorded before times were kept
+     */
+    public long getClockInTime(int epochDay) {
+        return mStore.clockInTime(epochDay);
+    }
+
+    /**
+     * Get the clock-in records of a range of dates, with the time and type of each clock-in
+     *
+     * @param fromEpochDay First day (inclusive)
+     * @param toEpochDay   Last day (inclusive)
+     */
+    public ClockInRecords getClockInRecords(int fromEpochDay, int toEpochDay) {
+        return mStore.getRecords(fromEpochDay, toEpochDay);
     }
 
     /**
@@ -80,41 +312,84 @@ public class ClockInManager {
      * @param year  Year
      * @param month Month (1-12)
      * @return Returns a HashMap, key is day (1-31), value is whether clocked in
+     * @see #getMonthClockInMask(int, int)
      */
     public HashMap<Integer, Boolean> getMonthClockInData(int year, int month) {
         HashMap<Integer, Boolean> result = new HashMap<>();
+        int mask = getMonthClockInMask(year, month);
+        int lastDay = EpochDays.lengthOfMonth(year, month);
+        for (int day = 1; day <= lastDay; day++) {
+            result.put(day, (mask & (1 << (day - 1))) != 0);
+        }
+        return result;
+    }
 
-        Calendar calendar = Calendar.getInstance();
-        calendar.set(year, month - 1, 1);
+    /**
+     * Get clock-in calendar data for a specific month without allocating
+     *
+     * @param year  Year
+     * @param month Month (1-12)
+     * @return Bitmask, bit (day - 1) is set if that day is clocked in
+     */
+    public int getMonthClockInMask(int year, int month) {
+        return mStore.getMonthMask(year, month);
+    }
 
-        int lastDay = calendar.getActualMaximum(Calendar.DAY_OF_MONTH);
+    /**
+     * Get the number of clocked-in days in a month
+     *
+     * @param year  Year
+     * @param month Month (1-12)
+     */
+    public int getMonthClockInCount(int year, int month) {
+        return mStore.monthCount(year, month);
+    }
 
-        for (int day = 1; day <= lastDay; day++) {
-            calendar.set(Calendar.DAY_OF_MONTH, day);
-            String dateString = mDateFormat.format(calendar.getTime());
-            result.put(day, hasClockedIn(dateString));
-        }
+    /**
+     * Get the years with at least one clock-in, ascending
+     */
+    public int[] getClockInYears() {
+        return mStore.years();
+    }
 
-        return result;
+    /**
+     * Get the number of clocked-in days in a year
+     */
+    public int getYearClockInCount(int year) {
+        return mStore.yearCount(year);
     }
 
     /**
-     * Get consecutive clock-in days
+     * Get the number of clocked-in days in a range of dates
+     *
+     * @param fromEpochDay First day (inclusive)
+     * @param toEpochDay   Last day (inclusive)
+     */
+    public int getClockInCount(int fromEpochDay, int toEpochDay) {
+        return mStore.count(fromEpochDay, toEpochDay);
+    }
+
+    /**
+     * Get consecutive clock-in days, counted back from today
      */
     public int getConsecutiveClockInDays() {
-        int count = 0;
-        Calendar calendar = Calendar.getInstance();
-
-        while (true) {
-            String dateString = mDateFormat.format(calendar.getTime());
-            if (hasClockedIn(dateString)) {
-                count++;
-                calendar.add(Calendar.DAY_OF_MONTH, -1);
-            } else {
-                break;
-            }
-        }
+        return mStore.streakEndingAt(EpochDays.today());
+    }
 
-        return count;
+    /**
+     * Get the longest run of consecutive clock-in days ever recorded
+     */
+    public int getLongestConsecutiveClockInDays() {
+        return mStore.longestStreak();
+    }
+
+    /**
+     * Get the longest run of consecutive clock-in days within a range of dates
+     *
+     * @param fromEpochDay First day (inclusive)
+     * @param toEpochDay   Last day (inclusive)
+     */
+    public int getLongestConsecutiveClockInDays(int fromEpochDay, int toEpochDay) {
+        return mStore.longestStreak(fromEpochDay, toEpochDay);
     }
 }
@@ -0,0 +1,22 @@
+package com.example.mcpdemo;
+
+/**
+ * Clock-in records of a day range, sorted by day: parallel arrays of {@link #size} entries
+ */
+public final class ClockInRecords {
+
+    /** Days since 1970-01-01 */
+    public final int[] epochDays;
+    /** {@link ClockInJournal#TYPE_CLOCK_IN}, {@link ClockInJournal#TYPE_MAKE_UP} or {@link ClockInTimeIndex#UNKNOWN_TYPE} */
+    public final int[] types;
+    /** When each clock-in was recorded, {@link ClockInTimeIndex#UNKNOWN_TIME} for days recorded before times were kept */
+    public final long[] timesMillis;
+    public final int size;
+
+    ClockInRecords(int[] epochDays, int[] types, long[] timesMillis) {
+        this.epochDays = epochDays;
+        this.types = types;
+        this.timesMillis = timesMillis;
+        this.size = epochDays.length;
+    }
+}
@@ -0,0 +1,719 @@
+package com.example.mcpdemo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Clock-in storage engine: keeps clock-ins as one packed bitmap per year, indexed by epoch day.
+ * <p>
+ * Persistence is a snapshot of all year bitmaps plus a {@link ClockInJournal} of the clock-ins recorded
+ * since. Opening reads the snapshot and replays only the journal tail; each new clock-in queues one
+ * fixed-size journal record, written in the background unless the caller {@link #await}s a durability level.
+ * Once the journal holds enough records it is compacted into a new snapshot.
+ * <p>
+ * Snapshot layout: magic, version, generation (long), year count (int), then one slot per year:
+ * year (int) followed by {@link #WORDS_PER_YEAR} longs; then record count (int) and one time record per day:
+ * epoch day (int), type (int), time in millis (long), sorted by day.
+ * <p>
+ * Every clock-in keeps the time it was recorded in a {@link ClockInTimeIndex}, the record of truth for
+ * time-of-day and type queries. The bitmaps hold the same days as a per-day membership index, and the
+ * remaining indexes are derived from them on open and kept up to date on every write: a {@link StreakIndex}
+ * and per-month / per-year clock-in counts, so summaries never scan day by day.
+ * <p>
+ * Thread safety: reads never lock. Bitmaps and counts are atomic arrays behind a volatile year table,
+ * and the time and streak indexes are read optimistically through a {@link StampedLock}. A write claims its day
+ * with a compare-and-set on the bitmap word, so writers only contend when they touch the same word;
+ * the journal append is the one serialized step. Compaction and {@link #clear()} wait for
+ * in-flight writes to finish.
+ */
+final class ClockInStore {
+
+    static final String FILE_NAME = "clock_in.bitmap";
+    static final int DEFAULT_COMPACT_THRESHOLD = 4096;
+
+    private static final int MAGIC = 0x4D434942; // "MCIB"
+    private static final int VERSION = 3;
+    // Version 1 had no generation and was updated in place, version 2 had no times
+    private static final int VERSION_1 = 1;
+    private static final int VERSION_2 = 2;
+    private static final int RECORD_SIZE = 16;
+    // 6 * 64 = 384 bits, enough for 366 days
+    static final int WORDS_PER_YEAR = 6;
+    private static final int SLOT_SIZE = 4 + WORDS_PER_YEAR * 8;
+
+    // java.util.logging reaches logcat on Android and keeps the store free of Android classes for the bench
+    private static final Logger sLog = Logger.getLogger("MCPDemo");
+
+    private final File mDir;
+    private final int mCompactThreshold;
+    // Journal record count at which the next compaction is tried, pushed back after a failed one
+    private volatile int mCompactAt;
+    private ClockInJournal mJournal;
+    private long mGeneration;
+    private volatile Years mYears = new Years(0, new AtomicLongArray[0], new AtomicIntegerArray[0]);
+    // Guards growing mYears
+    private final Object mYearsLock = new Object();
+    private final StreakIndex mStreaks = new StreakIndex();
+    private final ClockInTimeIndex mTimes = new ClockInTimeIndex();
+    private final StampedLock mIndexLock = new StampedLock();
+    // Writes share the read side; compaction, clear and close take the write side
+    private final ReentrantReadWriteLock mWriteGate = new ReentrantReadWriteLock();
+
+    /**
+     * Immutable year table; the bitmaps and counts it points to are updated in place
+     */
+    private static final class Years {
+        final int mBaseYear;
+        // Bitmaps indexed by (year - mBaseYear), null if the year has no clock-in
+        final AtomicLongArray[] mBitmaps;
+        // Clock-in counts indexed like mBitmaps: [0] is the year total, [1..12] the months
+        final AtomicIntegerArray[] mCounts;
+
+        Years(int baseYear, AtomicLongArray[] bitmaps, AtomicIntegerArray[] counts) {
+            this.mBaseYear = baseYear;
+            this.mBitmaps = bitmaps;
+            this.mCounts = counts;
+        }
+
+        AtomicLongArray bitmap(int year) {
+            int index = year - mBaseYear;
+            return index >= 0 && index < mBitmaps.length ? mBitmaps[index] : null;
+        }
+
+        AtomicIntegerArray counts(int year) {
+            int index = year - mBaseYear;
+            return index >= 0 && index < mCounts.length ? mCounts[index] : null;
+        }
+    }
+
+    private ClockInStore(File dir, int compactThreshold) {
+        this.mDir = dir;
+        this.mCompactThreshold = compactThreshold;
+        this.mCompactAt = compactThreshold;
+    }
+
+    /**
+     * Open the store in a directory, creating an empty one if missing
+     *
+     * @throws IOException if the files cannot be read or the snapshot is not a clock-in bitmap file
+     */
+    static ClockInStore open(File dir) throws IOException {
+        return open(dir, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    /**
+     * Open the store, compacting the journal every {@code compactThreshold} records
+     */
+    static ClockInStore open(File dir, int compactThreshold) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        ClockInStore store = new ClockInStore(dir, compactThreshold);
+        boolean upgrade = store.readSnapshot();
+        store.mJournal = ClockInJournal.open(dir, store.mGeneration,
+                (type, epochDay, timeMillis) -> {
+                    store.setBit(epochDay);
+                    store.mTimes.add(epochDay, type, timeMillis);
+                });
+        store.indexDays();
+        if (upgrade) {
+            store.compact();
+        }
+        return store;
+    }
+
+    /**
+     * Load the snapshot into memory
+     *
+     * @return true if the snapshot is in an older format and should be rewritten
+     */
+    private boolean readSnapshot() throws IOException {
+        File file = new File(mDir, FILE_NAME);
+        if (!file.exists()) {
+            return false;
+        }
+        byte[] bytes;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            bytes = new byte[(int) in.length()];
+            in.readFully(bytes);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a clock-in bitmap file");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION && version != VERSION_2 && version != VERSION_1) {
+            throw new IOException("Unsupported clock-in bitmap version " + version);
+        }
+        if (version != VERSION_1) {
+            mGeneration = buffer.getLong();
+        }
+        if (version != VERSION) {
+            // A trailing partial slot is a version 1 year append that never completed, drop it
+            while (buffer.remaining() >= SLOT_SIZE) {
+                readSlot(buffer);
+            }
+            return true;
+        }
+        int years = buffer.getInt();
+        if (buffer.remaining() < (long) years * SLOT_SIZE + 4) {
+            throw new IOException("Truncated clock-in bitmap file");
+        }
+        for (int i = 0; i < years; i++) {
+            readSlot(buffer);
+        }
+        int records = buffer.getInt();
+        if (buffer.remaining() < (long) records * RECORD_SIZE) {
+            throw new IOException("Truncated clock-in bitmap file");
+        }
+        for (int i = 0; i < records; i++) {
+            int epochDay = buffer.getInt();
+            int type = buffer.getInt();
+            mTimes.add(epochDay, type, buffer.getLong());
+        }
+        return false;
+    }
+
+    private void readSlot(ByteBuffer buffer) {
+        AtomicLongArray words = yearBitmap(buffer.getInt());
+        for (int i = 0; i < WORDS_PER_YEAR; i++) {
+            words.set(i, words.get(i) | buffer.getLong());
+        }
+    }
+
+    /**
+     * Write all bitmaps as the snapshot of {@code generation}, atomically replacing the previous one
+     */
+    private void writeSnapshot(long generation) throws IOException {
+        Years years = mYears;
+        int count = 0;
+        for (AtomicLongArray words : years.mBitmaps) {
+            if (words != null) {
+                count++;
+            }
+        }
+        int records = mTimes.size();
+        ByteBuffer buffer = ByteBuffer.allocate(20 + count * SLOT_SIZE + 4 + records * RECORD_SIZE);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(generation).putInt(count);
+        for (int index = 0; index < years.mBitmaps.length; index++) {
+            AtomicLongArray words = years.mBitmaps[index];
+            if (words == null) {
+                continue;
+            }
+            buffer.putInt(years.mBaseYear + index);
+            for (int i = 0; i < WORDS_PER_YEAR; i++) {
+                buffer.putLong(words.get(i));
+            }
+        }
+        buffer.putInt(records);
+        for (int i = 0; i < records; i++) {
+            buffer.putInt(mTimes.dayAt(i)).putInt(mTimes.typeAt(i)).putLong(mTimes.timeAt(i));
+        }
+        File tmp = new File(mDir, FILE_NAME + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(buffer.array());
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(new File(mDir, FILE_NAME))) {
+            throw new IOException("Cannot replace " + FILE_NAME);
+        }
+    }
+
+    /**
+     * Fold the journal into a new snapshot and start an empty journal. Callers hold the write gate.
+     */
+    private void compact() throws IOException {
+        long generation = mGeneration + 1;
+        writeSnapshot(generation);
+        // From here on the old journal is ignored, even if the reset below never happens
+        mGeneration = generation;
+        mJournal.reset(generation);
+        mCompactAt = mCompactThreshold;
+    }
+
+    private void indexDays() {
+        Years years = mYears;
+        long stamp = mIndexLock.writeLock();
+        try {
+            for (int index = 0; index < years.mBitmaps.length; index++) {
+                AtomicLongArray words = years.mBitmaps[index];
+                if (words == null) {
+                    continue;
+                }
+                int firstDay = EpochDays.of(years.mBaseYear + index, 1, 1);
+                for (int w = 0; w < WORDS_PER_YEAR; w++) {
+                    long word = words.get(w);
+                    while (word != 0) {
+                        // Days from older snapshots and the legacy prefs have no time record
+                        indexDay(firstDay + w * 64 + Long.numberOfTrailingZeros(word),
+                                ClockInTimeIndex.UNKNOWN_TYPE, ClockInTimeIndex.UNKNOWN_TIME);
+                        word &= word - 1;
+                    }
+                }
+            }
+        } finally {
+            mIndexLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Add a newly clocked-in day to the indexes. Callers hold the index write lock.
+     */
+    private void indexDay(int epochDay, int type, long timeMillis) {
+        mTimes.add(epochDay, type, timeMillis);
+        mStreaks.add(epochDay);
+        AtomicIntegerArray counts = mYears.counts(EpochDays.year(epochDay));
+        counts.incrementAndGet(0);
+        counts.incrementAndGet(EpochDays.month(epochDay));
+    }
+
+    /**
+     * Record a clock-in
+     *
+     * @param epochDay Day to clock in
+     * @param type     {@link ClockInJournal#TYPE_CLOCK_IN} or {@link ClockInJournal#TYPE_MAKE_UP}
+     * @return true if the day was not clocked in before
+     */
+    boolean set(int epochDay, int type) throws IOException {
+        Lock gate = mWriteGate.readLock();
+        gate.lock();
+        try {
+            // Only the thread that flips the bit goes on, so a day is journaled and counted once
+            if (!setBit(epochDay)) {
+                return false;
+            }
+            long timeMillis = System.currentTimeMillis();
+            try {
+                mJournal.append(type, epochDay, timeMillis);
+            } catch (IOException e) {
+                clearBit(epochDay);
+                throw e;
+            }
+            long stamp = mIndexLock.writeLock();
+            try {
+                indexDay(epochDay, type, timeMillis);
+            } finally {
+                mIndexLock.unlockWrite(stamp);
+            }
+        } finally {
+            gate.unlock();
+        }
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Record clock-ins for several days, queued as one journal commit
+     *
+     * @param epochDays Days to clock in, duplicates and already clocked-in days are skipped
+     * @param type      {@link ClockInJournal#TYPE_CLOCK_IN} or {@link ClockInJournal#TYPE_MAKE_UP}
+     * @return The days that were not clocked in before
+     */
+    int[] setAll(int[] epochDays, int type) throws IOException {
+        int[] added = new int[epochDays.length];
+        int count = 0;
+        Lock gate = mWriteGate.readLock();
+        gate.lock();
+        try {
+            for (int epochDay : epochDays) {
+                // Duplicates in the batch fail the claim like days set by other threads
+                if (setBit(epochDay)) {
+                    added[count++] = epochDay;
+                }
+            }
+            if (count == 0) {
+                return new int[0];
+            }
+            long timeMillis = System.currentTimeMillis();
+            try {
+                mJournal.appendAll(type, added, count, timeMillis);
+            } catch (IOException e) {
+                for (int i = 0; i < count; i++) {
+                    clearBit(added[i]);
+                }
+                throw e;
+            }
+            long stamp = mIndexLock.writeLock();
+            try {
+                for (int i = 0; i < count; i++) {
+                    indexDay(added[i], type, timeMillis);
+                }
+            } finally {
+                mIndexLock.unlockWrite(stamp);
+            }
+        } finally {
+            gate.unlock();
+        }
+        compactIfNeeded();
+        return Arrays.copyOf(added, count);
+    }
+
+    /**
+     * Add days recorded before times were kept, such as the legacy prefs: only their bits are set, so they
+     * keep an unknown time and type. The days go into one new snapshot instead of a journal record each.
+     *
+     * @return Number of days that were not clocked in before
+     */
+    int importUntimed(int[] epochDays) throws IOException {
+        Lock gate = mWriteGate.writeLock();
+        gate.lock();
+        try {
+            int count = 0;
+            long stamp = mIndexLock.writeLock();
+            try {
+                for (int epochDay : epochDays) {
+                    if (setBit(epochDay)) {
+                        indexDay(epochDay, ClockInTimeIndex.UNKNOWN_TYPE, ClockInTimeIndex.UNKNOWN_TIME);
+                        count++;
+                    }
+                }
+            } finally {
+                mIndexLock.unlockWrite(stamp);
+            }
+            if (count > 0) {
+                compact();
+            }
+            return count;
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    /**
+     * Wait until every clock-in recorded so far is at least as durable as {@code durability}.
+     * Concurrent callers share journal writes and fsyncs.
+     *
+     * @throws IOException if the journal could not be written
+     */
+    void await(ClockInDurability durability) throws IOException {
+        mJournal.await(durability);
+    }
+
+    /**
+     * Compact once the journal is long enough. The write that triggered it is already journaled, so a
+     * failed compaction does not fail the write: it is logged and tried again after another
+     * {@code compactThreshold} records.
+     */
+    private void compactIfNeeded() {
+        if (mJournal.recordCount() < mCompactAt) {
+            return;
+        }
+        Lock gate = mWriteGate.writeLock();
+        gate.lock();
+        try {
+            // Another writer may have compacted while this one waited
+            int records = mJournal.recordCount();
+            if (records >= mCompactAt) {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    mCompactAt = records + mCompactThreshold;
+                    sLog.log(Level.WARNING, "Compaction failed, retrying after " + mCompactThreshold + " more records", e);
+                }
+            }
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    /**
+     * Copy the clock-ins of a day range into a bitset
+     *
+     * @param from First day (inclusive)
+     * @param to   Last day (inclusive)
+     * @return Bitset where bit {@code i} is set if day {@code from + i} is clocked in
+     */
+    long[] getRange(int from, int to) {
+        Years years = mYears;
+        long[] bits = new long[(to - from + 64) >>> 6];
+        int day = from;
+        while (day <= to) {
+            int year = EpochDays.year(day);
+            int yearStart = EpochDays.of(year, 1, 1);
+            int yearEnd = Math.min(to, EpochDays.of(year + 1, 1, 1) - 1);
+            AtomicLongArray words = years.bitmap(year);
+            if (words != null) {
+                for (int bit = day - yearStart; bit <= yearEnd - yearStart; bit++) {
+                    if ((words.get(bit >>> 6) & (1L << bit)) != 0) {
+                        int i = yearStart + bit - from;
+                        bits[i >>> 6] |= 1L << i;
+                    }
+                }
+            }
+            day = yearEnd + 1;
+        }
+        return bits;
+    }
+
+    /**
+     * Get the clock-ins of a month as a bitmask
+     *
+     * @param year  Year
+     * @param month Month (1-12)
+     * @return Bit {@code d - 1} is set if day {@code d} of the month is clocked in
+     */
+    int getMonthMask(int year, int month) {
+        AtomicLongArray words = mYears.bitmap(year);
+        if (words == null) {
+            return 0;
+        }
+        int start = EpochDays.of(year, month, 1) - EpochDays.of(year, 1, 1);
+        int length = EpochDays.lengthOfMonth(year, month);
+        int offset = start & 63;
+        long bits = words.get(start >>> 6) >>> offset;
+        if (offset + length > 64) {
+            bits |= words.get((start >>> 6) + 1) << (64 - offset);
+        }
+        return (int) (bits & ((1L << length) - 1));
+    }
+
+    /**
+     * Query whether a day is clocked in
+     */
+    boolean get(int epochDay) {
+        int year = EpochDays.year(epochDay);
+        AtomicLongArray words = mYears.bitmap(year);
+        if (words == null) {
+            return false;
+        }
+        int bit = epochDay - EpochDays.of(year, 1, 1);
+        return (words.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    /**
+     * Number of consecutive clocked-in days up to and including {@code epochDay}
+     */
+    int streakEndingAt(int epochDay) {
+        return readIndexes(() -> mStreaks.streakEndingAt(epochDay));
+    }
+
+    /**
+     * Length of the longest run of consecutive clocked-in days
+     */
+    int longestStreak() {
+        return readIndexes(mStreaks::longest);
+    }
+
+    /**
+     * When a day was clocked in
+     *
+     * @return Time in millis, {@link ClockInTimeIndex#UNKNOWN_TIME} if not clocked in or recorded before times were kept
+     */
+    long clockInTime(int epochDay) {
+        return readIndexes(() -> mTimes.time(epochDay));
+    }
+
+    /**
+     * Get the time records of a day range
+     *
+     * @param from First day (inclusive)
+     * @param to   Last day (inclusive)
+     */
+    ClockInRecords getRecords(int from, int to) {
+        return readIndexes(() -> mTimes.range(from, to));
+    }
+
+    /**
+     * Read the time and streak indexes without blocking writers, retrying under the read lock if a write interfered
+     */
+    private <T> T readIndexes(Supplier<T> read) {
+        long stamp = mIndexLock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T value = read.get();
+                if (mIndexLock.validate(stamp)) {
+                    return value;
+                }
+            } catch (IndexOutOfBoundsException e) {
+                // Saw the index arrays halfway through a resize, the stamp is invalid anyway
+            }
+        }
+        stamp = mIndexLock.readLock();
+        try {
+            return read.get();
+        } finally {
+            mIndexLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Years with at least one clock-in, ascending
+     */
+    int[] years() {
+        Years years = mYears;
+        int[] result = new int[years.mCounts.length];
+        int count = 0;
+        for (int index = 0; index < years.mCounts.length; index++) {
+            if (years.mCounts[index] != null && years.mCounts[index].get(0) > 0) {
+                result[count++] = years.mBaseYear + index;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Number of clocked-in days in a year
+     */
+    int yearCount(int year) {
+        AtomicIntegerArray counts = mYears.counts(year);
+        return counts != null ? counts.get(0) : 0;
+    }
+
+    /**
+     * Number of clocked-in days in a month
+     *
+     * @param year  Year
+     * @param month Month (1-12)
+     */
+    int monthCount(int year, int month) {
+        AtomicIntegerArray counts = mYears.counts(year);
+        return counts != null ? counts.get(month) : 0;
+    }
+
+    /**
+     * Number of clocked-in days in a range, from month counts plus the partial months at both ends
+     *
+     * @param from First day (inclusive)
+     * @param to   Last day (inclusive)
+     */
+    int count(int from, int to) {
+        int total = 0;
+        int monthStart = from - EpochDays.dayOfMonth(from) + 1;
+        while (monthStart <= to) {
+            int year = EpochDays.year(monthStart);
+            int month = EpochDays.month(monthStart);
+            int length = EpochDays.lengthOfMonth(year, month);
+            int monthEnd = monthStart + length - 1;
+            if (monthStart >= from && monthEnd <= to) {
+                total += monthCount(year, month);
+            } else {
+                int mask = getMonthMask(year, month);
+                int first = Math.max(from, monthStart) - monthStart;
+                int last = Math.min(to, monthEnd) - monthStart;
+                // Keep bits first..last
+                mask &= (int) (((1L << (last + 1)) - 1) & ~((1L << first) - 1));
+                total += Integer.bitCount(mask);
+            }
+            monthStart = monthEnd + 1;
+        }
+        return total;
+    }
+
+    /**
+     * Length of the longest run of consecutive clocked-in days within a range, runs are clipped to the range
+     *
+     * @param from First day (inclusive)
+     * @param to   Last day (inclusive)
+     */
+    int longestStreak(int from, int to) {
+        return readIndexes(() -> mStreaks.longestWithin(from, to));
+    }
+
+    /**
+     * Remove all clock-ins
+     */
+    void clear() throws IOException {
+        Lock gate = mWriteGate.writeLock();
+        gate.lock();
+        try {
+            synchronized (mYearsLock) {
+                mYears = new Years(0, new AtomicLongArray[0], new AtomicIntegerArray[0]);
+            }
+            long stamp = mIndexLock.writeLock();
+            try {
+                mStreaks.clear();
+                mTimes.clear();
+            } finally {
+                mIndexLock.unlockWrite(stamp);
+            }
+            compact();
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    /**
+     * Release the journal file; the store must not be used afterwards
+     */
+    void close() throws IOException {
+        Lock gate = mWriteGate.writeLock();
+        gate.lock();
+        try {
+            mJournal.close();
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    /**
+     * Set the bit of a day
+     *
+     * @return true if this call set it, false if it was already set
+     */
+    private boolean setBit(int epochDay) {
+        int year = EpochDays.year(epochDay);
+        int bit = epochDay - EpochDays.of(year, 1, 1);
+        AtomicLongArray words = yearBitmap(year);
+        long mask = 1L << bit;
+        long word;
+        do {
+            word = words.get(bit >>> 6);
+            if ((word & mask) != 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(bit >>> 6, word, word | mask));
+        return true;
+    }
+
+    private void clearBit(int epochDay) {
+        int year = EpochDays.year(epochDay);
+        int bit = epochDay - EpochDays.of(year, 1, 1);
+        long mask = ~(1L << bit);
+        yearBitmap(year).getAndUpdate(bit >>> 6, word -> word & mask);
+    }
+
+    /**
+     * Get the bitmap of a year, adding the year to the table if missing
+     */
+    private AtomicLongArray yearBitmap(int year) {
+        AtomicLongArray words = mYears.bitmap(year);
+        if (words != null) {
+            return words;
+        }
+        synchronized (mYearsLock) {
+            Years years = mYears;
+            words = years.bitmap(year);
+            if (words != null) {
+                return words;
+            }
+            int length = years.mBitmaps.length;
+            int baseYear = length == 0 ? year : Math.min(years.mBaseYear, year);
+            int shift = years.mBaseYear - baseYear;
+            int grownLength = Math.max(length + shift, year - baseYear + 1);
+            AtomicLongArray[] bitmaps = new AtomicLongArray[grownLength];
+            AtomicIntegerArray[] counts = new AtomicIntegerArray[grownLength];
+            if (length > 0) {
+                System.arraycopy(years.mBitmaps, 0, bitmaps, shift, length);
+                System.arraycopy(years.mCounts, 0, counts, shift, length);
+            }
+            words = new AtomicLongArray(WORDS_PER_YEAR);
+            bitmaps[year - baseYear] = words;
+            counts[year - baseYear] = new AtomicIntegerArray(13);
+            // Existing years keep their arrays, so writes racing with the swap are not lost
+            mYears = new Years(baseYear, bitmaps, counts);
+            return words;
+        }
+    }
+}
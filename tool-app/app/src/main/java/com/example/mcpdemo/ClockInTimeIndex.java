@@ -0,0 +1,132 @@
+package com.example.mcpdemo;
+
+/**
+ * Time index: one record per clocked-in day, holding when and how the clock-in was recorded.
+ * <p>
+ * Records live in parallel primitive arrays sorted by epoch day, so a range is a binary search for its
+ * first day followed by a sequential copy. Days usually arrive in order and are appended at the end.
+ */
+final class ClockInTimeIndex {
+
+    /** Time of days recorded before clock-in times were kept */
+    static final long UNKNOWN_TIME = Long.MIN_VALUE;
+    /** Type of days recorded before clock-in types were kept */
+    static final int UNKNOWN_TYPE = 0;
+
+    private int[] mDays = new int[16];
+    private long[] mTimes = new long[16];
+    private byte[] mTypes = new byte[16];
+    private int mSize;
+
+    /**
+     * Add the record of a day; the first record of a day wins, except that a known time replaces an unknown one
+     *
+     * @param type       {@link ClockInJournal#TYPE_CLOCK_IN}, {@link ClockInJournal#TYPE_MAKE_UP} or {@link #UNKNOWN_TYPE}
+     * @param timeMillis When the clock-in was recorded, or {@link #UNKNOWN_TIME}
+     * @return true if the day was not in the index before
+     */
+    boolean add(int epochDay, int type, long timeMillis) {
+        int i = lowerBound(epochDay);
+        if (i < mSize && mDays[i] == epochDay) {
+            if (mTimes[i] == UNKNOWN_TIME && timeMillis != UNKNOWN_TIME) {
+                mTimes[i] = timeMillis;
+                mTypes[i] = (byte) type;
+            }
+            return false;
+        }
+        if (mSize == mDays.length) {
+            int[] days = new int[mSize * 2];
+            long[] times = new long[mSize * 2];
+            byte[] types = new byte[mSize * 2];
+            System.arraycopy(mDays, 0, days, 0, mSize);
+            System.arraycopy(mTimes, 0, times, 0, mSize);
+            System.arraycopy(mTypes, 0, types, 0, mSize);
+            mDays = days;
+            mTimes = times;
+            mTypes = types;
+        }
+        System.arraycopy(mDays, i, mDays, i + 1, mSize - i);
+        System.arraycopy(mTimes, i, mTimes, i + 1, mSize - i);
+        System.arraycopy(mTypes, i, mTypes, i + 1, mSize - i);
+        mDays[i] = epochDay;
+        mTimes[i] = timeMillis;
+        mTypes[i] = (byte) type;
+        mSize++;
+        return true;
+    }
+
+    /**
+     * When a day was clocked in
+     *
+     * @return Time in millis, {@link #UNKNOWN_TIME} if the day is not clocked in or its time is unknown
+     */
+    long time(int epochDay) {
+        int i = lowerBound(epochDay);
+        return i < mSize && mDays[i] == epochDay ? mTimes[i] : UNKNOWN_TIME;
+    }
+
+    /**
+     * Copy the records of a day range
+     *
+     * @param from First day (inclusive)
+     * @param to   Last day (inclusive)
+     */
+    ClockInRecords range(int from, int to) {
+        int first = lowerBound(from);
+        int last = to == Integer.MAX_VALUE ? mSize : lowerBound(to + 1);
+        int size = Math.max(0, last - first);
+        int[] days = new int[size];
+        long[] times = new long[size];
+        int[] types = new int[size];
+        System.arraycopy(mDays, first, days, 0, size);
+        System.arraycopy(mTimes, first, times, 0, size);
+        for (int i = 0; i < size; i++) {
+            types[i] = mTypes[first + i];
+        }
+        return new ClockInRecords(days, types, times);
+    }
+
+    /**
+     * Number of records
+     */
+    int size() {
+        return mSize;
+    }
+
+    int dayAt(int index) {
+        return mDays[index];
+    }
+
+    int typeAt(int index) {
+        return mTypes[index];
+    }
+
+    long timeAt(int index) {
+        return mTimes[index];
+    }
+
+    void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Index of the first record on or after {@code day}, {@link #mSize} if none
+     */
+    private int lowerBound(int day) {
+        // Days usually arrive in order, check the end first
+        if (mSize == 0 || mDays[mSize - 1] < day) {
+            return mSize;
+        }
+        int low = 0;
+        int high = mSize - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mDays[mid] < day) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
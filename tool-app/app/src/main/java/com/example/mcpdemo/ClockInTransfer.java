@@ -0,0 +1,281 @@
+package com.example.mcpdemo;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming codecs for bulk clock-in import/export. Both directions work on streams, so the history
+ * never has to fit in a single string.
+ * <p>
+ * {@link #FORMAT_NDJSON}: one JSON object per line, a run of consecutive days
+ * {@code {"start":"2024-01-01","end":"2024-01-31"}} or a single day {@code {"date":"2024-02-29"}}.
+ * Either format holds at most {@link #MAX_IMPORT_DAYS} days.
+ * <p>
+ * {@link #FORMAT_BITMAP}: magic, version, then one slot per year in ascending order:
+ * year (int) followed by {@link ClockInStore#WORDS_PER_YEAR} longs, bit {@code i} being day {@code i} of the year.
+ */
+final class ClockInTransfer {
+
+    static final String FORMAT_NDJSON = "ndjson";
+    static final String FORMAT_BITMAP = "bitmap";
+
+    private static final int MAGIC = 0x4D434958; // "MCIX"
+    private static final int VERSION = 1;
+    // Longest valid line is {"start":"yyyy-MM-dd","end":"yyyy-MM-dd"} plus some whitespace
+    private static final int MAX_LINE_LENGTH = 256;
+    private static final int CHUNK_DAYS = 512;
+    // A hundred years of days; a single range line could otherwise expand to millions
+    static final int MAX_IMPORT_DAYS = 36_600;
+
+    /**
+     * Supplies the clock-ins of one year
+     */
+    interface YearSource {
+        /**
+         * @return Bitset where bit {@code i} is set if day {@code i} of the year (0 = January 1st) is clocked in
+         */
+        long[] yearBits(int year);
+    }
+
+    /**
+     * Receives imported days in chunks
+     */
+    interface DaySink {
+        /**
+         * @param epochDays Days read, the first {@code count} entries are valid; the array is reused
+         */
+        void onDays(int[] epochDays, int count) throws IOException;
+    }
+
+    private ClockInTransfer() {
+    }
+
+    /**
+     * MIME type of an exported stream
+     */
+    static String mimeType(String format) {
+        return FORMAT_NDJSON.equals(format) ? "application/x-ndjson" : "application/octet-stream";
+    }
+
+    /**
+     * Write the clock-ins of the given years
+     *
+     * @param years Years to export, ascending
+     * @return Number of clocked-in days written
+     */
+    static int export(String format, int[] years, YearSource source, OutputStream out) throws IOException {
+        return FORMAT_BITMAP.equals(format) ? writeBitmap(years, source, out) : writeNdjson(years, source, out);
+    }
+
+    /**
+     * Read an exported stream; {@code in} should be buffered
+     *
+     * @return Number of days read, including days already clocked in
+     * @throws IOException if the stream cannot be read, is not in {@code format} or holds more than
+     *                     {@link #MAX_IMPORT_DAYS} days
+     */
+    static int read(String format, InputStream in, DaySink sink) throws IOException {
+        return FORMAT_BITMAP.equals(format) ? readBitmap(in, sink) : readNdjson(in, sink);
+    }
+
+    private static int writeBitmap(int[] years, YearSource source, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        int days = 0;
+        for (int year : years) {
+            long[] bits = source.yearBits(year);
+            data.writeInt(year);
+            for (int i = 0; i < ClockInStore.WORDS_PER_YEAR; i++) {
+                long word = i < bits.length ? bits[i] : 0;
+                data.writeLong(word);
+                days += Long.bitCount(word);
+            }
+        }
+        data.flush();
+        return days;
+    }
+
+    private static int writeNdjson(int[] years, YearSource source, OutputStream out) throws IOException {
+        StringBuilder line = new StringBuilder(48);
+        int days = 0;
+        // Runs are carried across years, so a streak over New Year is one line
+        int runStart = 0;
+        int runEnd = 0;
+        boolean inRun = false;
+        for (int year : years) {
+            long[] bits = source.yearBits(year);
+            int yearStart = EpochDays.of(year, 1, 1);
+            for (int w = 0; w < bits.length; w++) {
+                long word = bits[w];
+                while (word != 0) {
+                    int day = yearStart + w * 64 + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    days++;
+                    if (inRun && day == runEnd + 1) {
+                        runEnd = day;
+                        continue;
+                    }
+                    if (inRun) {
+                        writeRun(out, line, runStart, runEnd);
+                    }
+                    runStart = day;
+                    runEnd = day;
+                    inRun = true;
+                }
+            }
+        }
+        if (inRun) {
+            writeRun(out, line, runStart, runEnd);
+        }
+        out.flush();
+        return days;
+    }
+
+    private static void writeRun(OutputStream out, StringBuilder line, int start, int end) throws IOException {
+        line.setLength(0);
+        if (start == end) {
+            EpochDays.appendTo(line.append("{\"date\":\""), start).append("\"}\n");
+        } else {
+            EpochDays.appendTo(line.append("{\"start\":\""), start).append("\",\"end\":\"");
+            EpochDays.appendTo(line, end).append("\"}\n");
+        }
+        for (int i = 0; i < line.length(); i++) {
+            out.write(line.charAt(i));
+        }
+    }
+
+    private static int readBitmap(InputStream in, DaySink sink) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a clock-in bitmap export");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported clock-in export version " + version);
+        }
+        int[] chunk = new int[CHUNK_DAYS];
+        int count = 0;
+        int days = 0;
+        while (true) {
+            int year;
+            try {
+                year = data.readInt();
+            } catch (EOFException e) {
+                break;
+            }
+            if (year < 0 || year > 9999) {
+                throw new IOException("Invalid year " + year);
+            }
+            int yearStart = EpochDays.of(year, 1, 1);
+            int yearLength = EpochDays.isLeapYear(year) ? 366 : 365;
+            for (int w = 0; w < ClockInStore.WORDS_PER_YEAR; w++) {
+                long word = data.readLong();
+                while (word != 0) {
+                    int bit = w * 64 + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    if (bit >= yearLength) {
+                        throw new IOException("Day " + bit + " out of range for " + year);
+                    }
+                    if (days == MAX_IMPORT_DAYS) {
+                        throw tooManyDays();
+                    }
+                    chunk[count++] = yearStart + bit;
+                    days++;
+                    if (count == chunk.length) {
+                        sink.onDays(chunk, count);
+                        count = 0;
+                    }
+                }
+            }
+        }
+        if (count > 0) {
+            sink.onDays(chunk, count);
+        }
+        return days;
+    }
+
+    private static int readNdjson(InputStream in, DaySink sink) throws IOException {
+        int[] chunk = new int[CHUNK_DAYS];
+        int count = 0;
+        int days = 0;
+        byte[] line = new byte[MAX_LINE_LENGTH];
+        int lineNumber = 0;
+        boolean eof = false;
+        while (!eof) {
+            int length = 0;
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0) {
+                    eof = true;
+                    break;
+                }
+                if (length == MAX_LINE_LENGTH) {
+                    throw new IOException("Line " + (lineNumber + 1) + " is too long");
+                }
+                line[length++] = (byte) c;
+            }
+            lineNumber++;
+            String text = new String(line, 0, length, StandardCharsets.UTF_8).trim();
+            if (text.isEmpty()) {
+                continue;
+            }
+            JSONObject object;
+            try {
+                object = new JSONObject(text);
+            } catch (JSONException e) {
+                throw new IOException("Line " + lineNumber + ": not a JSON object");
+            }
+            int start;
+            int end;
+            if (object.has("date")) {
+                start = parseDate(object.opt("date"), lineNumber);
+                end = start;
+            } else {
+                if (!object.has("start") || !object.has("end")) {
+                    throw new IOException("Line " + lineNumber + ": expected \"date\" or \"start\" and \"end\"");
+                }
+                start = parseDate(object.opt("start"), lineNumber);
+                end = parseDate(object.opt("end"), lineNumber);
+                if (end < start) {
+                    throw new IOException("Line " + lineNumber + ": end is before start");
+                }
+            }
+            // Checked before expanding, so one oversized range imports nothing
+            if (end - start + 1 > MAX_IMPORT_DAYS - days) {
+                throw tooManyDays();
+            }
+            for (int day = start; day <= end; day++) {
+                chunk[count++] = day;
+                days++;
+                if (count == chunk.length) {
+                    sink.onDays(chunk, count);
+                    count = 0;
+                }
+            }
+        }
+        if (count > 0) {
+            sink.onDays(chunk, count);
+        }
+        return days;
+    }
+
+    private static int parseDate(Object date, int lineNumber) throws IOException {
+        if (!(date instanceof String) || !EpochDays.isValid((String) date)) {
+            throw new IOException("Line " + lineNumber + ": invalid date " + date);
+        }
+        return EpochDays.parse((String) date);
+    }
+
+    private static IOException tooManyDays() {
+        return new IOException("An import holds at most " + MAX_IMPORT_DAYS + " days");
+    }
+}
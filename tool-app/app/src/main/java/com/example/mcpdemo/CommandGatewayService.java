@@ -6,7 +6,14 @@ import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Intent;
+import android.content.res.XmlResourceParser;
+import android.net.Uri;
+import android.os.Binder;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.core.app.NotificationCompat;
@@ -14,126 +21,697 @@ import androidx.core.app.NotificationCompat;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.json.JSONException;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.BufferedInputStream;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class CommandGatewayService extends Service {
 
     private static final String CH_ID = "mcp_gateway";
     private static final int NOTIF_ID = 42;
+    // Upper bound for range and batch capabilities, about ten years
+    private static final int MAX_RANGE_DAYS = 3660;
+
+    // Upper bound for the number of requests in one batch envelope
+    private static final int MAX_BATCH_SIZE = 64;
+    // How long an entry of a parallel batch waits for a permit its siblings hold before it is busy
+    private static final long BATCH_PERMIT_WAIT_MS = 10_000;
+
+    // Request workers; beyond this many queued requests callers get a busy response
+    private static final int REQUEST_THREADS = 4;
+    // Intent extra enabling session mode with this idle timeout in milliseconds; 0 returns to cold mode
+    static final String EXTRA_SESSION_IDLE_MS = "mcp_session_idle_ms";
+    private static final long MAX_SESSION_IDLE_MS = 5 * 60_000;
+    private static final int MAX_QUEUED_REQUESTS = 32;
+    private static final long BUSY_RETRY_AFTER_MS = 500;
+    // Replayed responses per caller and request id; larger responses are only shared while running
+    private static final int REPLAY_CAPACITY = 128;
+    private static final long REPLAY_TTL_MS = 10 * 60_000;
+    private static final int MAX_REPLAY_CHARS = 32 * 1024;
+    // Lowest inline limit a request may ask for, so the replacement response itself stays inline
+    private static final int MIN_INLINE_RESPONSE = 1024;
 
     private ClockInManager clockInManager;
+    // Declared capabilities with their handlers, from res/xml/mcp_capabilities.xml
+    private McpCapabilityRegistry capabilities;
+    // Total cost of capabilities executing now, bounded by the descriptor's max_concurrent_cost
+    private Semaphore concurrencyCap;
+    // Runs Intent requests and asynchronous bound requests off the main and binder threads
+    private ThreadPoolExecutor requestExecutor;
+    // Runs the entries of parallel batches
+    private ExecutorService batchExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Intent requests accepted but not finished, and the latest start id; written on the main thread only,
+    // volatile so dump() can read them from a binder thread
+    private volatile int inFlightRequests;
+    private int lastStartId;
+    // Session mode keeps the service and its notification up this long after the last request, 0 for cold mode
+    private volatile long sessionIdleMs;
+    private final Runnable idleStop = this::stopNow;
+    private Notification notification;
+
+    /**
+     * Cost of the service lifecycle, across service instances: creation, foreground start and stop, and
+     * handing requests to the workers. Written on the main thread only, volatile so dump() can read it
+     * from a binder thread.
+     */
+    private static final class LifecycleStats {
+        volatile long requests;
+        volatile long creations;
+        volatile long lifecycleNanos;
+
+        String summary() {
+            return requests + " requests, " + creations + " service starts, "
+                    + (requests == 0 ? 0 : lifecycleNanos / 1000 / requests) + " us lifecycle overhead per request";
+        }
+    }
+
+    private static final LifecycleStats sStats = new LifecycleStats();
+    // Outlives service instances, like the lifecycle stats
+    private static final McpMetrics sMetrics = new McpMetrics();
+    // Per-caller token buckets; kept across service instances so cold-mode restarts do not refill them.
+    // Created in onCreate from the descriptor, main thread only.
+    private static McpRateLimiter sRateLimiter;
+    // Answered requests per caller and id; kept across service instances, since cold mode stops the
+    // service after each answer and a retry would otherwise run its capability again
+    private static final McpReplayCache<Response> sReplayCache = new McpReplayCache<>(REPLAY_CAPACITY, REPLAY_TTL_MS,
+            SystemClock::elapsedRealtime, response -> !response.mTransient && response.mJson.length() <= MAX_REPLAY_CHARS);
+
+    // Single flight for read-only capabilities: nothing is retained once the running call answers
+    private final McpReplayCache<Response> inFlightReads = new McpReplayCache<>(REPLAY_CAPACITY, 0,
+            SystemClock::elapsedRealtime, response -> false);
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
-        // MUST do this ASAP for startForegroundService callers
-        startForeground(NOTIF_ID, buildNotification("Processing command…"));
+        long begin = SystemClock.elapsedRealtimeNanos();
+        // MUST do this ASAP for startForegroundService callers; the notification is built once
+        startForeground(NOTIF_ID, notification);
+        mainHandler.removeCallbacks(idleStop);
+        lastStartId = startId;
+        try {
+            return startRequest(intent);
+        } finally {
+            sStats.lifecycleNanos += SystemClock.elapsedRealtimeNanos() - begin;
+        }
+    }
 
+    private int startRequest(Intent intent) {
         if (intent == null) {
-            stopForeground(true);
-            stopSelf(startId);
+            stopIfIdle();
             return START_NOT_STICKY;
         }
-
+        if (intent.hasExtra(EXTRA_SESSION_IDLE_MS)) {
+            sessionIdleMs = Math.max(0, Math.min(MAX_SESSION_IDLE_MS, intent.getLongExtra(EXTRA_SESSION_IDLE_MS, 0)));
+        }
         String requestStr = intent.getStringExtra("request");
         PendingIntent callback = intent.getParcelableExtra("mcp_callback");
 
         if (callback == null || requestStr == null) {
             Log.e("MCPDemo", "Missing request/callback");
-            stopForeground(true);
-            stopSelf(startId);
+            stopIfIdle();
             return START_NOT_STICKY;
         }
 
+        // Parsing and execution happen on a worker, the main thread only hands the request over
+        sStats.requests++;
+        inFlightRequests++;
+        try {
+            requestExecutor.execute(() -> {
+                try {
+                    handleIntentRequest(requestStr, callback);
+                } finally {
+                    mainHandler.post(this::onRequestFinished);
+                }
+            });
+            sMetrics.recordQueueDepth(requestExecutor.getQueue().size());
+        } catch (RejectedExecutionException e) {
+            sMetrics.recordRejected();
+            inFlightRequests--;
+            Log.w("MCPDemo", "Request queue full, rejecting request");
+            String requestId = McpRequest.idOf(requestStr);
+            sendResponse(callback, requestId, busyResponse(requestId, "Too many queued requests.").mJson);
+            stopIfIdle();
+        }
+        return START_NOT_STICKY;
+    }
+
+    /**
+     * Parse, execute and answer one Intent request; runs on a request worker
+     */
+    private void handleIntentRequest(String requestStr, PendingIntent callback) {
         // 1. Parse JSON
-        JSONObject requestObj;
+        McpRequest request;
+        long begin = System.nanoTime();
         try {
-            requestObj = new JSONObject(requestStr);
-        } catch (JSONException e) {
+            request = McpRequest.parse(requestStr);
+        } catch (IOException e) {
             Log.e("MCPDemo", "request is not json");
-            stopForeground(true);
-            stopSelf(startId);
-            return START_NOT_STICKY;
+            return;
+        } finally {
+            sMetrics.recordParse(System.nanoTime() - begin);
         }
 
-        String requestId = requestObj.optString("id");
-        if (requestId.isEmpty()) {
+        if (request.mId.isEmpty()) {
             Log.e("MCPDemo", "Missing request id");
-            stopForeground(true);
-            stopSelf(startId);
-            return START_NOT_STICKY;
+            return;
         }
 
-        String resultJson;
-        // Execute MCP capability
-        JSONObject result = new JSONObject();
+        if (request.mCapabilityId == null && request.mBatch == null) {
+            Log.e("MCPDemo", "Missing capability");
+            return;
+        }
 
-        try {
-            JSONObject commandJson = requestObj.optJSONObject("capability");
-            if (commandJson == null) {
-                Log.e("MCPDemo", "Missing capability");
-                stopForeground(true);
-                stopSelf(startId);
-                return START_NOT_STICKY;
-            }
-
-            Log.d("MCPDemo", "Received MCP command: " + commandJson);
-            String capabilityId = commandJson.optString("id");
-
-            // 2. Route and dispatch
-            switch (capabilityId) {
-                case "clock_in_today":
-                    // 3. Execute
-                    notifyActivityToClick();
-                    result.put("status", "success");
-                    result.put("message", "Clock in successfully!");
-                    break;
-                case "query_clock_in":
-                    result = handleQueryClockIn(commandJson);
-                    break;
-                case "make_up_clock_in":
-                    result = handleMakeUpClockIn(commandJson);
-                    break;
-                default:
-                    Log.e("MCP", "Received unknown capability ID: " + capabilityId);
-                    result.put("status", "failure");
-                    result.put("message", "Unknown capability ID: " + capabilityId);
-                    break;
-            }
-            result.put("id", requestId);
-            resultJson = result.toString();
-        } catch (Exception e) {
-            Log.e("MCP", "JSON parsing or execution exception", e);
-            try {
-                result.put("id", requestId);
-                result.put("status", "failure");
-                result.put("message", e.getMessage());
-                resultJson = result.toString();
-            } catch (JSONException jsonException) {
-                resultJson = "{\"id\":\"" + requestId + ", \"status\":\"failure\", \"message\":\"" + e.getMessage() + "\"}";
-            }
+        // Send result back to LLM-app, after any partial frames of a streamed request
+        McpStream stream = openStream(request, frame -> sendResponse(callback, request.mId, frame));
+        String response = deliver(request, dispatchOnce(request, callback.getCreatorPackage(), stream));
+        sendResponse(callback, request.mId, stream != null ? stream.finish(response) : response);
+    }
+
+    /**
+     * Stream of a request that asked for one; batches are never streamed
+     *
+     * @param sender Sends a frame over the request's transport, null if it cannot stream
+     * @return The stream, null if the response is sent as one envelope
+     */
+    private static McpStream openStream(McpRequest request, McpStream.Sender sender) {
+        if (!request.mStream || request.mBatch != null || sender == null) {
+            return null;
         }
+        return new McpStream(request.mId, request.mCapabilityId, sender, SystemClock::elapsedRealtime);
+    }
 
-        // Send result back to LLM-app
+    private void sendResponse(PendingIntent callback, String requestId, String resultJson) {
         Intent back = new Intent();
         back.putExtra("mcp_request_id", requestId);
         back.putExtra("response", resultJson);
 
+        long begin = System.nanoTime();
         try {
             callback.send(this, 0, back);
         } catch (PendingIntent.CanceledException e) {
             Log.e("MCPDemo", "Callback canceled", e);
+        } finally {
+            sMetrics.recordSend(System.nanoTime() - begin);
+        }
+    }
+
+    // Main thread only
+    private void onRequestFinished() {
+        inFlightRequests--;
+        stopIfIdle();
+    }
+
+    /**
+     * Stop the service once no Intent request is running: right away in cold mode, after the idle
+     * timeout in session mode. Main thread only.
+     */
+    private void stopIfIdle() {
+        if (inFlightRequests != 0) {
+            return;
+        }
+        if (sessionIdleMs > 0) {
+            mainHandler.postDelayed(idleStop, sessionIdleMs);
+        } else {
+            stopNow();
         }
-        // Stop service instance
+    }
+
+    /**
+     * {@code stopSelf(startId)} only stops if no newer start arrived, so a request delivered after the
+     * last one finished keeps the service alive
+     */
+    private void stopNow() {
+        long begin = SystemClock.elapsedRealtimeNanos();
         stopForeground(true);
-        stopSelf(startId);
+        stopSelf(lastStartId);
+        sStats.lifecycleNanos += SystemClock.elapsedRealtimeNanos() - begin;
+        Log.d("MCPDemo", "Gateway idle, " + sStats.summary());
+    }
 
-        return START_NOT_STICKY;
+    /**
+     * Response envelope of one request
+     */
+    private static final class Response {
+        final String mStatus;
+        final String mJson;
+        // Whether the response reports a transient condition, such as busy, that a retry should not replay
+        final boolean mTransient;
+
+        Response(String status, String json) {
+            this(status, json, "busy".equals(status) || "rate_limited".equals(status));
+        }
+
+        Response(String status, String json, boolean isTransient) {
+            this.mStatus = status;
+            this.mJson = json;
+            this.mTransient = isTransient;
+        }
+    }
+
+    /**
+     * Execute a request envelope and build the response envelope: a single capability, or a batch of them.
+     * Shared by the Intent and binder transports and called on request workers and binder threads, so handlers must be thread-safe.
+     *
+     * @param request Request envelope with a capability or a batch
+     * @param stream  Frames sent ahead of the response, null if not streamed
+     * @return Response envelope
+     */
+    private Response dispatch(McpRequest request, McpStream stream) {
+        if (request.mBatch != null) {
+            return executeBatch(request);
+        }
+        return execute(request, request.mId, stream, 0);
+    }
+
+    /**
+     * Execute one capability
+     *
+     * @param request   Request envelope with a capability
+     * @param requestId The request id, echoed in the response
+     * @param stream    Frames sent ahead of the response, null if not streamed
+     * @param waitMs    How long to wait for a concurrency permit, 0 to answer busy right away
+     * @return Response envelope, never null
+     */
+    private Response execute(McpRequest request, String requestId, McpStream stream, long waitMs) {
+        // Execute MCP capability
+        try {
+            String capabilityId = request.mCapabilityId;
+            Log.d("MCPDemo", "Received MCP command: " + capabilityId);
+
+            // 2. Route and validate
+            McpCapabilityRegistry.Capability capability = capabilities.get(capabilityId);
+            if (capability == null) {
+                Log.e("MCP", "Received unknown capability ID: " + capabilityId);
+                return statusResponse(requestId, "failure", "Unknown capability ID: " + capabilityId);
+            }
+            McpMetrics.CapabilityMetrics metrics = sMetrics.capability(capabilityId);
+            metrics.mCalls.incrementAndGet();
+            long begin = System.nanoTime();
+            String invalid = request.mInputError != null ? request.mInputError : capability.validate(request.mInput);
+            metrics.mValidate.record(System.nanoTime() - begin);
+            if (invalid != null) {
+                Log.e("MCPDemo", "Invalid input for " + capabilityId + ": " + invalid);
+                metrics.mFailures.incrementAndGet();
+                return statusResponse(requestId, "failure", invalid);
+            }
+            // Capabilities not declared streaming answer a streamed request with the terminal frame only
+            McpStream frames = capability.mStreaming ? stream : null;
+            if (!capability.mReadOnly || frames != null) {
+                return run(capability, metrics, request.mInput, requestId, frames, waitMs);
+            }
+
+            // Identical reads running at the same time share one execution, written under the shared id
+            boolean[] ran = new boolean[1];
+            Response shared = inFlightReads.execute(McpSharedCalls.key(capabilityId, request.mInput), () -> {
+                ran[0] = true;
+                return run(capability, metrics, request.mInput, McpSharedCalls.SHARED_ID, null, waitMs);
+            });
+            if (!ran[0]) {
+                Log.d("MCPDemo", "Coalesced " + capabilityId + " into a running call");
+                metrics.mCoalesced.incrementAndGet();
+                if (!"success".equals(shared.mStatus)) {
+                    metrics.mFailures.incrementAndGet();
+                }
+            }
+            return new Response(shared.mStatus, McpSharedCalls.withId(shared.mJson, requestId), shared.mTransient);
+        } catch (Exception e) {
+            if (capabilities.get(request.mCapabilityId) != null) {
+                sMetrics.capability(request.mCapabilityId).mFailures.incrementAndGet();
+            }
+            Log.e("MCP", "JSON parsing or execution exception", e);
+            return statusResponse(requestId, "failure", e.getMessage());
+        }
+    }
+
+    /**
+     * Run the handler of a validated capability under its concurrency limits
+     *
+     * @param waitMs How long to wait for a permit, 0 to answer busy right away
+     * @return Response envelope, never null
+     */
+    private Response run(McpCapabilityRegistry.Capability capability, McpMetrics.CapabilityMetrics metrics,
+                         JSONObject input, String requestId, McpStream stream, long waitMs) {
+        String capabilityId = capability.mId;
+        Semaphore limit = capability.mLimit;
+        if (limit != null && !acquire(limit, 1, waitMs)) {
+            Log.w("MCPDemo", "Capability " + capabilityId + " at its concurrency limit");
+            metrics.mFailures.incrementAndGet();
+            metrics.mBusy.incrementAndGet();
+            return busyResponse(requestId, "Capability " + capabilityId + " is busy.");
+        }
+        // Weighted cap over all capabilities, a capability costing more than the cap runs alone
+        int cost = Math.min(capability.mCost, capabilities.maxConcurrentCost());
+        if (!acquire(concurrencyCap, cost, waitMs)) {
+            if (limit != null) {
+                limit.release();
+            }
+            Log.w("MCPDemo", "Concurrency cap reached, rejecting " + capabilityId);
+            metrics.mFailures.incrementAndGet();
+            metrics.mBusy.incrementAndGet();
+            return busyResponse(requestId, "Gateway is at its concurrency limit.");
+        }
+        try {
+            // 3. Execute, the handler writes the rest of the envelope
+            McpJsonWriter out = new McpJsonWriter();
+            out.beginObject().name("id").value(requestId);
+            boolean succeeded;
+            long begin = System.nanoTime();
+            try {
+                succeeded = capability.handler().handle(capabilityId, input, out, stream);
+            } finally {
+                metrics.mExecute.record(System.nanoTime() - begin);
+            }
+            out.endObject();
+            if (!succeeded) {
+                metrics.mFailures.incrementAndGet();
+            }
+            return new Response(succeeded ? "success" : "failure", out.toString());
+        } catch (Exception e) {
+            metrics.mFailures.incrementAndGet();
+            Log.e("MCP", "JSON parsing or execution exception", e);
+            return statusResponse(requestId, "failure", e.getMessage());
+        } finally {
+            if (limit != null) {
+                limit.release();
+            }
+            concurrencyCap.release(cost);
+        }
+    }
+
+    /**
+     * Take permits, waiting up to {@code waitMs} for them
+     *
+     * @return false if the permits were not available in time
+     */
+    private static boolean acquire(Semaphore semaphore, int permits, long waitMs) {
+        if (waitMs <= 0) {
+            return semaphore.tryAcquire(permits);
+        }
+        try {
+            return semaphore.tryAcquire(permits, waitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Execute a batch envelope: {"id", "batch": [request envelopes], "mode": "sequential" | "parallel",
+     * "stop_on_failure"}. Sequential batches run in array order; parallel ones run on the batch executor, where
+     * an entry waits for the concurrency permits its siblings hold instead of failing as busy.
+     * A batch with an unknown capability or invalid input in any entry fails as a whole, before any entry runs.
+     *
+     * @return Aggregated response with one response envelope per batch entry, in request order
+     */
+    private Response executeBatch(McpRequest batch) {
+        String batchId = batch.mId;
+        List<McpRequest> items = batch.mBatch;
+        String mode = batch.mMode;
+        if (items.isEmpty() || items.size() > MAX_BATCH_SIZE) {
+            return statusResponse(batchId, "failure", "batch must be a non-empty array of at most " + MAX_BATCH_SIZE + " requests.");
+        }
+        if (!"sequential".equals(mode) && !"parallel".equals(mode)) {
+            return statusResponse(batchId, "failure", "Invalid mode, expected sequential or parallel.");
+        }
+        // Validate every entry before running any of them, so bad input never leaves a batch partly applied.
+        // Entries can still fail while running, e.g. busy; stop_on_failure bounds that for sequential batches.
+        String invalid = capabilities.validateBatch(items);
+        if (invalid != null) {
+            Log.e("MCPDemo", "Invalid batch " + batchId + ": " + invalid);
+            return statusResponse(batchId, "failure", invalid);
+        }
+        String[] ids = new String[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            ids[i] = items.get(i).mId.isEmpty() ? batchId + "#" + i : items.get(i).mId;
+        }
+        Log.d("MCPDemo", "Received MCP batch " + batchId + ": " + items.size() + " requests, " + mode);
+
+        Response[] responses = new Response[items.size()];
+        if ("parallel".equals(mode)) {
+            List<Future<Response>> futures = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                McpRequest item = items.get(i);
+                String id = ids[i];
+                futures.add(batchExecutor.submit(() -> execute(item, id, null, BATCH_PERMIT_WAIT_MS)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    responses[i] = futures.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    responses[i] = statusResponse(ids[i], "failure", "Interrupted.");
+                } catch (ExecutionException e) {
+                    responses[i] = statusResponse(ids[i], "failure", String.valueOf(e.getCause()));
+                }
+            }
+        } else {
+            boolean stopped = false;
+            for (int i = 0; i < items.size(); i++) {
+                if (stopped) {
+                    responses[i] = statusResponse(ids[i], "skipped", "Skipped after an earlier failure.");
+                    continue;
+                }
+                responses[i] = execute(items.get(i), ids[i], null, 0);
+                stopped = batch.mStopOnFailure && !"success".equals(responses[i].mStatus);
+            }
+        }
+
+        int succeeded = 0;
+        int length = 0;
+        boolean isTransient = false;
+        for (Response response : responses) {
+            if ("success".equals(response.mStatus)) {
+                succeeded++;
+            }
+            isTransient |= response.mTransient;
+            length += response.mJson.length() + 1;
+        }
+        String status = succeeded == responses.length ? "success" : succeeded == 0 ? "failure" : "partial";
+        // Entries are embedded as they are, not parsed back
+        McpJsonWriter out = new McpJsonWriter(length + 128);
+        out.beginObject();
+        out.name("id").value(batchId);
+        out.name("status").value(status);
+        out.name("message").value(succeeded + " of " + responses.length + " requests succeeded.");
+        out.name("responses").beginArray();
+        for (Response response : responses) {
+            out.rawValue(response.mJson);
+        }
+        out.endArray();
+        out.endObject();
+        return new Response(status, out.toString(), isTransient);
+    }
+
+    /**
+     * Dispatch a request unless the caller sent the same request id recently: a repeat of a running
+     * request waits for its response, a repeat of a finished one gets the cached response replayed
+     *
+     * @param caller Package of the calling app
+     * @param stream Frames sent ahead of the response, null if not streamed; a repeat only gets the response
+     */
+    private Response dispatchOnce(McpRequest request, String caller, McpStream stream) {
+        return sReplayCache.execute(caller + '\n' + request.mId, () -> admit(request, caller, stream));
+    }
+
+    /**
+     * Charge the caller's token bucket with the cost of a request, then dispatch it
+     *
+     * @return The response, or a rate_limited response with the time until the caller has enough tokens
+     */
+    private Response admit(McpRequest request, String caller, McpStream stream) {
+        int cost = 0;
+        if (request.mBatch != null) {
+            for (McpRequest item : request.mBatch) {
+                cost += costOf(item.mCapabilityId);
+            }
+        } else {
+            cost = costOf(request.mCapabilityId);
+        }
+        long waitMs = sRateLimiter.tryAcquire(caller, cost);
+        if (waitMs > 0) {
+            Log.w("MCPDemo", "Rate limited " + caller + ", retry in " + waitMs + " ms");
+            sMetrics.recordRateLimited();
+            McpJsonWriter out = new McpJsonWriter();
+            out.beginObject();
+            out.name("id").value(request.mId);
+            out.name("status").value("rate_limited");
+            out.name("message").value("Too many requests from " + caller + ".");
+            out.name("retry_after_ms").value(waitMs);
+            out.endObject();
+            return new Response("rate_limited", out.toString());
+        }
+        return dispatch(request, stream);
+    }
+
+    private int costOf(String capabilityId) {
+        McpCapabilityRegistry.Capability capability = capabilityId != null ? capabilities.get(capabilityId) : null;
+        return capability != null ? capability.mCost : 1;
+    }
+
+    /**
+     * Validate a request envelope received over the binder and dispatch it
+     *
+     * @param caller Package of the calling app
+     * @param sender Sends frames of a streamed request, null if the caller waits for one response
+     * @return Response JSON, a failure response if the envelope is malformed
+     */
+    private String dispatchBound(String requestStr, String caller, McpStream.Sender sender) {
+        McpRequest request;
+        long begin = System.nanoTime();
+        try {
+            request = McpRequest.parse(requestStr);
+        } catch (IOException e) {
+            Log.e("MCPDemo", "request is not json");
+            return statusResponse("", "failure", "Request is not JSON.").mJson;
+        } finally {
+            sMetrics.recordParse(System.nanoTime() - begin);
+        }
+        if (request.mId.isEmpty()) {
+            Log.e("MCPDemo", "Missing request id");
+            return statusResponse("", "failure", "Missing request id.").mJson;
+        }
+        if (request.mCapabilityId == null && request.mBatch == null) {
+            Log.e("MCPDemo", "Missing capability");
+            return statusResponse(request.mId, "failure", "Missing capability.").mJson;
+        }
+        McpStream stream = openStream(request, sender);
+        String response = deliver(request, dispatchOnce(request, caller, stream));
+        return stream != null ? stream.finish(response) : response;
+    }
+
+    /**
+     * Return a response inline, or hand it over through {@link McpTransferProvider} if it is above the
+     * inline limit: the descriptor's limit, lowered by the request's {@code max_inline_response_bytes}.
+     * <p>
+     * The inline replacement carries the real status plus {@code response_uri}, {@code response_length}
+     * (UTF-8 bytes) and {@code response_sha256}, so a caller can read and verify the full response.
+     */
+    private String deliver(McpRequest request, Response response) {
+        int limit = capabilities.maxInlineResponse();
+        if (request.mMaxInlineResponse > 0) {
+            limit = Math.max(MIN_INLINE_RESPONSE, Math.min(limit, request.mMaxInlineResponse));
+        }
+        // At most three UTF-8 bytes per char, short responses need no encoding
+        if (response.mJson.length() <= limit / 3) {
+            return response.mJson;
+        }
+        byte[] bytes = response.mJson.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= limit) {
+            return response.mJson;
+        }
+        String sha256;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            sha256 = hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        Uri uri = McpTransferProvider.register(this, "application/json", out -> out.write(bytes));
+        Log.d("MCPDemo", "Response " + request.mId + " of " + bytes.length + " bytes handed over as " + uri);
+
+        McpJsonWriter out = new McpJsonWriter();
+        out.beginObject();
+        out.name("id").value(request.mId);
+        out.name("status").value(response.mStatus);
+        out.name("message").value("Response of " + bytes.length + " bytes, read it from response_uri.");
+        out.name("response_uri").value(uri.toString());
+        out.name("response_length").value(bytes.length);
+        out.name("response_sha256").value(sha256);
+        out.name("expires_in_ms").value(McpTransferProvider.TTL_MS);
+        out.endObject();
+        return out.toString();
+    }
+
+    /**
+     * Overload response; the caller should retry the same request after {@code retry_after_ms}
+     */
+    private static Response busyResponse(String requestId, String message) {
+        McpJsonWriter out = new McpJsonWriter();
+        out.beginObject();
+        out.name("id").value(requestId);
+        out.name("status").value("busy");
+        out.name("message").value(message);
+        out.name("retry_after_ms").value(BUSY_RETRY_AFTER_MS);
+        out.endObject();
+        return new Response("busy", out.toString());
+    }
+
+    private static Response statusResponse(String requestId, String status, String message) {
+        McpJsonWriter out = new McpJsonWriter();
+        out.beginObject();
+        out.name("id").value(requestId);
+        out.name("status").value(status);
+        out.name("message").value(message);
+        out.endObject();
+        return new Response(status, out.toString());
     }
 
     @Override
     public void onCreate() {
+        long begin = SystemClock.elapsedRealtimeNanos();
         super.onCreate();
-        clockInManager = new ClockInManager(this);
+        clockInManager = ClockInManager.getInstance(this);
+        capabilities = loadCapabilities();
+        concurrencyCap = new Semaphore(capabilities.maxConcurrentCost());
+        if (sRateLimiter == null) {
+            sRateLimiter = new McpRateLimiter(capabilities.ratePerSecond(), capabilities.rateBurst(),
+                    SystemClock::elapsedRealtime);
+        }
+        requestExecutor = new ThreadPoolExecutor(REQUEST_THREADS, REQUEST_THREADS, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_REQUESTS));
+        requestExecutor.allowCoreThreadTimeOut(true);
+        batchExecutor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
         ensureChannel();
+        notification = buildNotification("Processing command…");
+        sStats.creations++;
+        sStats.lifecycleNanos += SystemClock.elapsedRealtimeNanos() - begin;
+    }
+
+    private McpCapabilityRegistry loadCapabilities() {
+        McpCapabilityRegistry registry;
+        try (XmlResourceParser parser = getResources().getXml(R.xml.mcp_capabilities)) {
+            registry = McpCapabilityRegistry.load(parser);
+        } catch (XmlPullParserException | IOException e) {
+            throw new IllegalStateException("Cannot read mcp_capabilities.xml", e);
+        }
+        registry.bind("clock_in_today", this::handleClockInToday);
+        registry.bind("query_clock_in", this::handleQueryClockIn);
+        registry.bind("make_up_clock_in", this::handleMakeUpClockIn);
+        registry.bind("query_clock_in_range", this::handleQueryClockInRange);
+        registry.bind("make_up_clock_in_batch", this::handleMakeUpClockInBatch);
+        registry.bind("query_clock_in_times", this::handleQueryClockInTimes);
+        registry.bind("clock_in_stats", this::handleClockInStats);
+        registry.bind("export_clock_in_history", this::handleExportClockInHistory);
+        registry.bind("import_clock_in_history", this::handleImportClockInHistory);
+        registry.bind("mcp_metrics", this::handleMetrics);
+        return registry;
     }
 
     private void ensureChannel() {
@@ -155,9 +733,70 @@ public class CommandGatewayService extends Service {
         return b.build();
     }
 
+    // Persistent transport: a bound client calls capabilities at binder latency, without the
+    // foreground-service start and stop of the Intent path
+    private final IMcpGateway.Stub binder = new IMcpGateway.Stub() {
+        @Override
+        public String call(String request) {
+            return dispatchBound(request, callerPackage(), null);
+        }
+
+        @Override
+        public void callAsync(String request, IMcpGatewayCallback callback) {
+            String requestId = McpRequest.idOf(request);
+            // The caller is only known on the binder thread
+            String caller = callerPackage();
+            try {
+                requestExecutor.execute(() -> respond(callback, requestId,
+                        dispatchBound(request, caller, frame -> respond(callback, requestId, frame))));
+                sMetrics.recordQueueDepth(requestExecutor.getQueue().size());
+            } catch (RejectedExecutionException e) {
+                sMetrics.recordRejected();
+                Log.w("MCPDemo", "Request queue full, rejecting bound request");
+                respond(callback, requestId, busyResponse(requestId, "Too many queued requests.").mJson);
+            }
+        }
+    };
+
+    private String callerPackage() {
+        String name = getPackageManager().getNameForUid(Binder.getCallingUid());
+        return name != null ? name : "uid:" + Binder.getCallingUid();
+    }
+
+    private static void respond(IMcpGatewayCallback callback, String requestId, String response) {
+        long begin = System.nanoTime();
+        try {
+            callback.onResponse(requestId, response);
+        } catch (RemoteException e) {
+            Log.e("MCPDemo", "Callback failed", e);
+        } finally {
+            sMetrics.recordSend(System.nanoTime() - begin);
+        }
+    }
+
     @Override
     public IBinder onBind(Intent intent) {
-        return null;
+        return binder;
+    }
+
+    @Override
+    public void onDestroy() {
+        mainHandler.removeCallbacks(idleStop);
+        requestExecutor.shutdown();
+        batchExecutor.shutdown();
+        super.onDestroy();
+    }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        // adb shell dumpsys activity service com.example.mcpdemo/.CommandGatewayService
+        // Runs on a binder thread, read the timeout once so both uses agree
+        long idleMs = sessionIdleMs;
+        writer.println("mode: " + (idleMs > 0 ? "session, idle timeout " + idleMs + " ms" : "cold"));
+        writer.println("in flight: " + inFlightRequests);
+        writer.println(sStats.summary());
+        writer.println();
+        sMetrics.dump(writer, requestExecutor.getQueue().size());
     }
 
     // Send broadcast to MainActivity
@@ -168,78 +807,431 @@ public class CommandGatewayService extends Service {
         sendBroadcast(intent);
     }
 
+    /**
+     * Handle clock-in today command
+     */
+    private boolean handleClockInToday(String capabilityId, JSONObject args, McpJsonWriter out) {
+        notifyActivityToClick();
+        out.name("status").value("success");
+        out.name("message").value("Clock in successfully!");
+        return true;
+    }
+
     /**
      * Handle query clock-in command
      *
-     * @return JSONObject containing the result
+     * @return true on success
+     */
+    private boolean handleQueryClockIn(String capabilityId, JSONObject args, McpJsonWriter out) throws JSONException {
+        String date = args.getString("date");
+        boolean hasClockedIn = clockInManager.hasClockedIn(EpochDays.parse(date));
+        Log.d("MCP", "Query " + date + " clock-in status: " + hasClockedIn);
+
+        beginOutput(out, capabilityId, hasClockedIn ? "Has clocked in." : "Hasn't clocked in.");
+        out.name("date").value(date);
+        out.name("has_clocked_in").value(hasClockedIn);
+        endOutput(out);
+        return true;
+    }
+
+    /**
+     * Handle make-up clock-in command
+     *
+     * @return true on success
+     */
+    private boolean handleMakeUpClockIn(String capabilityId, JSONObject args, McpJsonWriter out) throws JSONException {
+        String date = args.getString("date");
+        ClockInDurability durability = parseDurability(args);
+
+        // The UI is notified through ClockInManager's change listeners
+        clockInManager.clockInDate(EpochDays.parse(date));
+        ClockInDurability achieved = clockInManager.awaitDurability(durability);
+        Log.d("MCP", "Make up clock-in for " + date + ", " + achieved.wireName());
+
+        beginOutput(out, capabilityId, "Make up clock-in successful for " + date);
+        out.name("date").value(date);
+        out.name("success").value(true);
+        out.name("durability").value(achieved.wireName());
+        endOutput(out);
+        return true;
+    }
+
+    /**
+     * Read the optional durability argument of a write capability
+     *
+     * @return The requested level, {@link ClockInDurability#WRITTEN} if absent
      */
-    private JSONObject handleQueryClockIn(JSONObject json) throws JSONException {
-        JSONObject response = new JSONObject();
-        String argsStr = json.optString("input");
-        JSONObject args = new JSONObject(argsStr);
-        JSONObject capabilityRes = new JSONObject();
-        capabilityRes.put("id", json.optString("id"));
-        String date = args.optString("date", "");
-        if (date.isEmpty()) {
-            Log.e("MCPDemo", "Missing args");
-            response.put("status", "failure");
-            response.put("message", "Missing args.");
-            return response;
+    private static ClockInDurability parseDurability(JSONObject args) {
+        return ClockInDurability.fromWireName(args.optString("durability", ClockInDurability.WRITTEN.wireName()));
+    }
+
+    /**
+     * Check the day range of a range capability
+     *
+     * @return false after writing a failure if the range is reversed or too long
+     */
+    private static boolean checkRange(int from, int to, McpJsonWriter out) {
+        if (to < from || to - from >= MAX_RANGE_DAYS) {
+            writeFailure(out, "end_date must be on or after start_date and within " + MAX_RANGE_DAYS + " days.");
+            return false;
         }
+        return true;
+    }
 
-        boolean hasClockedIn = clockInManager.hasClockedIn(date);
-        Log.d("MCP", "Query " + date + " clock-in status: " + hasClockedIn);
+    /**
+     * Handle range query command; a stream gets the clock-ins of each calendar year as it is read
+     *
+     * @return true on success
+     */
+    private boolean handleQueryClockInRange(String capabilityId, JSONObject args, McpJsonWriter out,
+                                            McpStream stream) throws JSONException {
+        String startDate = args.getString("start_date");
+        String endDate = args.getString("end_date");
+        int from = EpochDays.parse(startDate);
+        int to = EpochDays.parse(endDate);
+        if (!checkRange(from, to, out)) {
+            return false;
+        }
 
-        response.put("status", "success");
-        JSONObject output = new JSONObject();
-        output.put("date", date);
-        output.put("has_clocked_in", hasClockedIn);
-        if (hasClockedIn) {
-            response.put("message", "Has clocked in.");
+        long[] bits;
+        if (stream == null) {
+            bits = clockInManager.getClockInRange(from, to);
         } else {
-            response.put("message", "Hasn't clocked in.");
+            bits = new long[(to - from + 64) >>> 6];
+            int sliceFrom = from;
+            while (sliceFrom <= to) {
+                int first = sliceFrom;
+                int last = Math.min(to, EpochDays.of(EpochDays.year(first) + 1, 1, 1) - 1);
+                long[] slice = clockInManager.getClockInRange(first, last);
+                int offset = first - from;
+                for (int i = 0; i <= last - first; i++) {
+                    if ((slice[i >>> 6] & (1L << i)) != 0) {
+                        bits[(offset + i) >>> 6] |= 1L << (offset + i);
+                    }
+                }
+                stream.partial(partial -> {
+                    partial.name("start_date").value(EpochDays.format(first));
+                    partial.name("end_date").value(EpochDays.format(last));
+                    partial.name("clocked_in_dates").beginArray();
+                    for (int i = 0; i <= last - first; i++) {
+                        if ((slice[i >>> 6] & (1L << i)) != 0) {
+                            partial.value(EpochDays.format(first + i));
+                        }
+                    }
+                    partial.endArray();
+                });
+                sliceFrom = last + 1;
+            }
+        }
+        int totalDays = to - from + 1;
+        int clockedIn = 0;
+        for (int i = 0; i < totalDays; i++) {
+            if ((bits[i >>> 6] & (1L << i)) != 0) {
+                clockedIn++;
+            }
+        }
+        Log.d("MCP", "Query range " + startDate + " - " + endDate + ": " + clockedIn + " clocked in");
+
+        beginOutput(out, capabilityId, clockedIn + " of " + totalDays + " days clocked in.");
+        out.name("start_date").value(startDate);
+        out.name("end_date").value(endDate);
+        out.name("total_days").value(totalDays);
+        out.name("clocked_in_count").value(clockedIn);
+        // The dates are written straight from the bitmap, one pass per list
+        out.name("clocked_in_dates").beginArray();
+        for (int i = 0; i < totalDays; i++) {
+            if ((bits[i >>> 6] & (1L << i)) != 0) {
+                out.value(EpochDays.format(from + i));
+            }
+        }
+        out.endArray();
+        // Today and later days are not missed yet
+        int pastDays = Math.max(0, Math.min(totalDays, EpochDays.today() - from));
+        out.name("missed_dates").beginArray();
+        for (int i = 0; i < pastDays; i++) {
+            if ((bits[i >>> 6] & (1L << i)) == 0) {
+                out.value(EpochDays.format(from + i));
+            }
         }
-        capabilityRes.put("output", output);
-        response.put("capability", capabilityRes);
-        return response;
+        out.endArray();
+        endOutput(out);
+        return true;
     }
 
     /**
-     * Handle make-up clock-in command
+     * Handle clock-in times query command
      *
-     * @return JSONObject containing the result
+     * @return true on success
      */
-    private JSONObject handleMakeUpClockIn(JSONObject json) throws JSONException {
-        JSONObject response = new JSONObject();
-        String argsStr = json.optString("input");
-        JSONObject args = new JSONObject(argsStr);
-        JSONObject capabilityRes = new JSONObject();
-        capabilityRes.put("id", json.optString("id"));
-        String date = args.optString("date", "");
-        if (date.isEmpty()) {
-            Log.e("MCPDemo", "Missing args");
-            response.put("status", "failure");
-            response.put("message", "Missing args.");
-            return response;
+    private boolean handleQueryClockInTimes(String capabilityId, JSONObject args, McpJsonWriter out) throws JSONException {
+        String startDate = args.getString("start_date");
+        String endDate = args.getString("end_date");
+        int from = EpochDays.parse(startDate);
+        int to = EpochDays.parse(endDate);
+        if (!checkRange(from, to, out)) {
+            return false;
         }
 
-        clockInManager.clockInDate(date);
-        Log.d("MCP", "Make up clock-in for " + date);
+        ClockInRecords records = clockInManager.getClockInRecords(from, to);
+        Log.d("MCP", "Query times " + startDate + " - " + endDate + ": " + records.size + " records");
 
-        // Send broadcast to notify UI update
-        Intent intent = new Intent("ACTION_MAKE_UP_CLOCK_IN_SUCCESS");
-        intent.putExtra("date", date);
-        intent.setPackage(getPackageName());
-        sendBroadcast(intent);
+        beginOutput(out, capabilityId, records.size + " clock-ins between " + startDate + " and " + endDate + ".");
+        out.name("start_date").value(startDate);
+        out.name("end_date").value(endDate);
+        out.name("time_zone").value(TimeZone.getDefault().getID());
+        out.name("count").value(records.size);
+        out.name("records").beginArray();
+        SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX", Locale.US);
+        for (int i = 0; i < records.size; i++) {
+            out.beginObject();
+            out.name("date").value(EpochDays.format(records.epochDays[i]));
+            out.name("type").value(recordTypeName(records.types[i]));
+            long time = records.timesMillis[i];
+            if (time != ClockInTimeIndex.UNKNOWN_TIME) {
+                out.name("recorded_at").value(timeFormat.format(new Date(time)));
+                out.name("recorded_at_ms").value(time);
+            }
+            out.endObject();
+        }
+        out.endArray();
+        endOutput(out);
+        return true;
+    }
+
+    private static String recordTypeName(int type) {
+        switch (type) {
+            case ClockInJournal.TYPE_CLOCK_IN:
+                return "clock_in";
+            case ClockInJournal.TYPE_MAKE_UP:
+                return "make_up";
+            default:
+                return "unknown";
+        }
+    }
+
+    /**
+     * Handle batch make-up clock-in command
+     *
+     * @return true on success
+     */
+    private boolean handleMakeUpClockInBatch(String capabilityId, JSONObject args, McpJsonWriter out) throws JSONException {
+        // Every date was validated before the handler runs, nothing is recorded for a bad batch
+        JSONArray dates = args.getJSONArray("dates");
+        int[] epochDays = new int[dates.length()];
+        for (int i = 0; i < dates.length(); i++) {
+            epochDays[i] = EpochDays.parse(dates.getString(i));
+        }
+        ClockInDurability durability = parseDurability(args);
+
+        // One change notification for the whole batch
+        int added = clockInManager.clockInDates(epochDays);
+        ClockInDurability achieved = clockInManager.awaitDurability(durability);
+        Log.d("MCP", "Make up clock-in for " + dates.length() + " dates, " + added + " new, " + achieved.wireName());
+
+        beginOutput(out, capabilityId, "Make up clock-in successful for " + dates.length() + " dates");
+        out.name("dates").beginArray();
+        for (int i = 0; i < dates.length(); i++) {
+            out.value(dates.getString(i));
+        }
+        out.endArray();
+        out.name("newly_clocked_in").value(added);
+        out.name("success").value(true);
+        out.name("durability").value(achieved.wireName());
+        endOutput(out);
+        return true;
+    }
+
+    /**
+     * Handle clock-in statistics command; a stream gets the totals before the monthly breakdown is counted
+     *
+     * @return true on success
+     */
+    private boolean handleClockInStats(String capabilityId, JSONObject args, McpJsonWriter out,
+                                       McpStream stream) throws JSONException {
+        String startDate = args.getString("start_date");
+        String endDate = args.getString("end_date");
+        int from = EpochDays.parse(startDate);
+        int to = EpochDays.parse(endDate);
+        if (!checkRange(from, to, out)) {
+            return false;
+        }
+
+        int totalDays = to - from + 1;
+        int clockedIn = clockInManager.getClockInCount(from, to);
+        double completionRate = Math.round(clockedIn * 10000.0 / totalDays) / 10000.0;
+        int currentStreak = clockInManager.getConsecutiveClockInDays();
+        int longestStreak = clockInManager.getLongestConsecutiveClockInDays(from, to);
+        Log.d("MCP", "Stats " + startDate + " - " + endDate + ": " + clockedIn + "/" + totalDays);
+        if (stream != null) {
+            stream.partial(partial -> {
+                partial.name("total_days").value(totalDays);
+                partial.name("clocked_in_days").value(clockedIn);
+                partial.name("completion_rate").value(completionRate);
+                partial.name("current_streak").value(currentStreak);
+                partial.name("longest_streak").value(longestStreak);
+            });
+        }
+
+        beginOutput(out, capabilityId, clockedIn + " of " + totalDays + " days clocked in.");
+        out.name("start_date").value(startDate);
+        out.name("end_date").value(endDate);
+        out.name("total_days").value(totalDays);
+        out.name("clocked_in_days").value(clockedIn);
+        out.name("completion_rate").value(completionRate);
+        out.name("current_streak").value(currentStreak);
+        out.name("longest_streak").value(longestStreak);
+
+        // Months and years come from the aggregates, clipped to the range at both ends. The range spans
+        // at most eleven years, their totals are written after the months.
+        int[] yearTotals = new int[3 * (EpochDays.year(to) - EpochDays.year(from) + 1)];
+        out.name("monthly").beginArray();
+        int monthStart = from - EpochDays.dayOfMonth(from) + 1;
+        while (monthStart <= to) {
+            int year = EpochDays.year(monthStart);
+            int month = EpochDays.month(monthStart);
+            int monthEnd = monthStart + EpochDays.lengthOfMonth(year, month) - 1;
+            int first = Math.max(from, monthStart);
+            int last = Math.min(to, monthEnd);
+            int count = first == monthStart && last == monthEnd
+                    ? clockInManager.getMonthClockInCount(year, month)
+                    : clockInManager.getClockInCount(first, last);
+            out.beginObject();
+            out.name("month").value(EpochDays.format(monthStart).substring(0, 7));
+            out.name("clocked_in_days").value(count);
+            out.name("total_days").value(last - first + 1);
+            out.endObject();
+            int slot = 3 * (year - EpochDays.year(from));
+            yearTotals[slot] = year;
+            yearTotals[slot + 1] += count;
+            yearTotals[slot + 2] += last - first + 1;
+            monthStart = monthEnd + 1;
+        }
+        out.endArray();
+        out.name("yearly").beginArray();
+        for (int slot = 0; slot < yearTotals.length; slot += 3) {
+            out.beginObject();
+            out.name("year").value(yearTotals[slot]);
+            out.name("clocked_in_days").value(yearTotals[slot + 1]);
+            out.name("total_days").value(yearTotals[slot + 2]);
+            out.endObject();
+        }
+        out.endArray();
+        endOutput(out);
+        return true;
+    }
+
+    /**
+     * Handle history export command: the history is streamed through {@link McpTransferProvider}
+     *
+     * @return true on success
+     */
+    private boolean handleExportClockInHistory(String capabilityId, JSONObject args, McpJsonWriter out) {
+        String format = args.optString("format", ClockInTransfer.FORMAT_NDJSON);
+
+        int[] years = clockInManager.getClockInYears();
+        int clockedIn = 0;
+        for (int year : years) {
+            clockedIn += clockInManager.getYearClockInCount(year);
+        }
+        // The stream is produced when the caller opens the URI
+        Uri uri = McpTransferProvider.register(this, ClockInTransfer.mimeType(format), stream ->
+                ClockInTransfer.export(format, clockInManager.getClockInYears(),
+                        year -> clockInManager.getClockInRange(EpochDays.of(year, 1, 1), EpochDays.of(year + 1, 1, 1) - 1),
+                        stream));
+        Log.d("MCP", "Export " + clockedIn + " days as " + format);
+
+        beginOutput(out, capabilityId, "Open uri within " + McpTransferProvider.TTL_MS / 1000 + " seconds to read the export.");
+        out.name("uri").value(uri.toString());
+        out.name("format").value(format);
+        out.name("mime_type").value(ClockInTransfer.mimeType(format));
+        out.name("clocked_in_days").value(clockedIn);
+        out.name("expires_in_ms").value(McpTransferProvider.TTL_MS);
+        endOutput(out);
+        return true;
+    }
+
+    /**
+     * Handle history import command: the caller's content URI is read as a stream, a response stream
+     * gets the number of days read so far
+     *
+     * @return true on success
+     */
+    private boolean handleImportClockInHistory(String capabilityId, JSONObject args, McpJsonWriter out,
+                                               McpStream stream) throws JSONException {
+        String format = args.optString("format", ClockInTransfer.FORMAT_NDJSON);
+        Uri uri = Uri.parse(args.getString("source_uri"));
+        // Only content URIs: a file path would let callers read from this app's private storage
+        if (!"content".equals(uri.getScheme())) {
+            writeFailure(out, "source_uri must be a content:// URI readable by this app.");
+            return false;
+        }
+        ClockInDurability durability = parseDurability(args);
+
+        int[] added = new int[1];
+        long[] seen = new long[1];
+        int read;
+        try (InputStream in = getContentResolver().openInputStream(uri)) {
+            if (in == null) {
+                throw new IOException("Cannot open " + uri);
+            }
+            read = ClockInTransfer.read(format, new BufferedInputStream(in),
+                    (epochDays, count) -> {
+                        added[0] += clockInManager.clockInDates(Arrays.copyOf(epochDays, count));
+                        seen[0] += count;
+                        if (stream != null) {
+                            stream.progress(seen[0], -1);
+                        }
+                    });
+        } catch (IOException | SecurityException e) {
+            // Chunks read before the error stay imported
+            Log.e("MCPDemo", "Import failed: " + uri, e);
+            writeFailure(out, "Import failed after " + added[0] + " new days: " + e.getMessage());
+            return false;
+        }
+        ClockInDurability achieved = clockInManager.awaitDurability(durability);
+        Log.d("MCP", "Import " + read + " days as " + format + ", " + added[0] + " new, " + achieved.wireName());
+
+        beginOutput(out, capabilityId, "Imported " + read + " days, " + added[0] + " newly clocked in.");
+        out.name("format").value(format);
+        out.name("days_read").value(read);
+        out.name("newly_clocked_in").value(added[0]);
+        out.name("durability").value(achieved.wireName());
+        endOutput(out);
+        return true;
+    }
+
+    /**
+     * Handle metrics command: numbers since the process started
+     *
+     * @return true on success
+     */
+    private boolean handleMetrics(String capabilityId, JSONObject args, McpJsonWriter out) {
+        beginOutput(out, capabilityId, "Gateway metrics, latencies in microseconds.");
+        sMetrics.writeTo(out, requestExecutor.getQueue().size());
+        endOutput(out);
+        return true;
+    }
 
-        response.put("status", "success");
-        response.put("message", "Make up clock-in successful for " + date); // Unify: add message to the outermost layer
+    /**
+     * Write status, message and the capability object of a successful response, up to the members of its output
+     */
+    private static void beginOutput(McpJsonWriter out, String capabilityId, String message) {
+        out.name("status").value("success");
+        out.name("message").value(message);
+        out.name("capability").beginObject();
+        out.name("id").value(capabilityId);
+        out.name("output").beginObject();
+    }
+
+    /**
+     * Close the output and capability objects opened by {@link #beginOutput}
+     */
+    private static void endOutput(McpJsonWriter out) {
+        out.endObject().endObject();
+    }
 
-        JSONObject output = new JSONObject();
-        output.put("date", date);
-        output.put("success", true);
-        capabilityRes.put("output", output);
-        response.put("capability", capabilityRes);
-        return response;
+    private static void writeFailure(McpJsonWriter out, String message) {
+        out.name("status").value("failure");
+        out.name("message").value(message);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,216 @@
+package com.example.mcpdemo;
+
+import java.util.TimeZone;
+
+/**
+ * Epoch-day date helpers: a date is the number of days since 1970-01-01 (proleptic Gregorian calendar).
+ * <p>
+ * All methods are pure functions on primitives, so they are thread-safe and do not allocate,
+ * except {@link #format(int)} which returns the resulting string.
+ */
+final class EpochDays {
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private EpochDays() {
+    }
+
+    /**
+     * Get today's epoch day in the default time zone
+     */
+    static int today() {
+        return ofMillis(System.currentTimeMillis(), TimeZone.getDefault());
+    }
+
+    /**
+     * Get the epoch day of an instant in a time zone
+     */
+    static int ofMillis(long millis, TimeZone zone) {
+        return (int) Math.floorDiv(millis + zone.getOffset(millis), MILLIS_PER_DAY);
+    }
+
+    /**
+     * Whether the given year is a leap year
+     */
+    static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /**
+     * Get the epoch day of a date
+     *
+     * @param year  Year
+     * @param month Month (1-12)
+     * @param day   Day of month (1-31)
+     */
+    static int of(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Get the year of an epoch day
+     */
+    static int year(int epochDay) {
+        return civil(epochDay) >> 9;
+    }
+
+    /**
+     * Get the month (1-12) of an epoch day
+     */
+    static int month(int epochDay) {
+        return (civil(epochDay) >> 5) & 0xF;
+    }
+
+    /**
+     * Get the day of month (1-31) of an epoch day
+     */
+    static int dayOfMonth(int epochDay) {
+        return civil(epochDay) & 0x1F;
+    }
+
+    /**
+     * Get the zero-based day of year of an epoch day
+     */
+    static int dayOfYear(int epochDay) {
+        return epochDay - of(year(epochDay), 1, 1);
+    }
+
+    /**
+     * Get the ISO day of week of an epoch day, 1 (Monday) to 7 (Sunday)
+     */
+    static int dayOfWeek(int epochDay) {
+        // 1970-01-01 was a Thursday
+        return Math.floorMod(epochDay + 3, 7) + 1;
+    }
+
+    /**
+     * Decompose an epoch day into (year << 9) | (month << 5) | day
+     */
+    private static int civil(int epochDay) {
+        int z = epochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        // Years in this computation start on March 1st
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return (year << 9) | (month << 5) | day;
+    }
+
+    /**
+     * Parse a date string
+     *
+     * @param date Date string, format: yyyy-MM-dd
+     * @return Epoch day
+     * @throws IllegalArgumentException if the string is not a valid date
+     */
+    static int parse(CharSequence date) {
+        if (!isValid(date)) {
+            throw new IllegalArgumentException("Invalid date: " + date);
+        }
+        return of(digits(date, 0, 4), digits(date, 5, 7), digits(date, 8, 10));
+    }
+
+    /**
+     * Whether a string is a valid yyyy-MM-dd date
+     */
+    static boolean isValid(CharSequence date) {
+        if (date == null || date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return false;
+        }
+        int year = digits(date, 0, 4);
+        int month = digits(date, 5, 7);
+        int day = digits(date, 8, 10);
+        return year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= lengthOfMonth(year, month);
+    }
+
+    /**
+     * Format an epoch day as yyyy-MM-dd
+     */
+    static String format(int epochDay) {
+        char[] chars = new char[10];
+        formatTo(epochDay, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Write an epoch day as yyyy-MM-dd into {@code dst} at {@code offset}, 10 chars
+     */
+    static void formatTo(int epochDay, char[] dst, int offset) {
+        int civil = civil(epochDay);
+        int year = civil >> 9;
+        int month = (civil >> 5) & 0xF;
+        int day = civil & 0x1F;
+        dst[offset] = (char) ('0' + year / 1000 % 10);
+        dst[offset + 1] = (char) ('0' + year / 100 % 10);
+        dst[offset + 2] = (char) ('0' + year / 10 % 10);
+        dst[offset + 3] = (char) ('0' + year % 10);
+        dst[offset + 4] = '-';
+        dst[offset + 5] = (char) ('0' + month / 10);
+        dst[offset + 6] = (char) ('0' + month % 10);
+        dst[offset + 7] = '-';
+        dst[offset + 8] = (char) ('0' + day / 10);
+        dst[offset + 9] = (char) ('0' + day % 10);
+    }
+
+    /**
+     * Append an epoch day as yyyy-MM-dd to a builder
+     */
+    static StringBuilder appendTo(StringBuilder sb, int epochDay) {
+        int civil = civil(epochDay);
+        int year = civil >> 9;
+        int month = (civil >> 5) & 0xF;
+        int day = civil & 0x1F;
+        sb.append((char) ('0' + year / 1000 % 10))
+                .append((char) ('0' + year / 100 % 10))
+                .append((char) ('0' + year / 10 % 10))
+                .append((char) ('0' + year % 10))
+                .append('-')
+                .append((char) ('0' + month / 10))
+                .append((char) ('0' + month % 10))
+                .append('-')
+                .append((char) ('0' + day / 10))
+                .append((char) ('0' + day % 10));
+        return sb;
+    }
+
+    /**
+     * Get the number of days in a month
+     *
+     * @param year  Year
+     * @param month Month (1-12)
+     */
+    static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static int digits(CharSequence s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
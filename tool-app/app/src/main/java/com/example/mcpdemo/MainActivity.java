@@ -6,6 +6,7 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.util.Log;
 import android.widget.Button;
 import android.widget.GridLayout;
 import android.widget.TextView;
@@ -14,11 +15,13 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
 
+import java.io.UncheckedIOException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -32,9 +35,11 @@ public class MainActivity extends AppCompatActivity {
     private ClockInManager clockInManager;
     private Calendar currentCalendar;
     private SimpleDateFormat monthFormat;
-    private SimpleDateFormat dayFormat;
     private SimpleDateFormat logTimeFormat;
 
+    // Runs blocking store writes started by the activity, in order
+    private static final ExecutorService sStoreExecutor = Executors.newSingleThreadExecutor();
+
     // Broadcast receiver: listens for Service commands (for AI remote triggering)
     private final BroadcastReceiver aiCommandReceiver = new BroadcastReceiver() {
         @Override
@@ -44,12 +49,33 @@ public class MainActivity extends AppCompatActivity {
                 if (myButton != null) {
                     myButton.performClick();
                 }
-            } else if ("ACTION_MAKE_UP_CLOCK_IN_SUCCESS".equals(action)) {
-                String date = intent.getStringExtra("date");
+            }
+        }
+    };
+
+    // Clock-in change listener: reports changes from both the UI and the gateway service
+    private final ClockInManager.OnClockInChangedListener clockInListener = new ClockInManager.OnClockInChangedListener() {
+        @Override
+        public void onClockInChanged(int[] epochDays) {
+            runOnUiThread(() -> {
                 refreshCalendar();
                 updateClockInStatus();
-                addLog("Make-up clock-in successful: " + date);
-            }
+                if (epochDays.length > 1) {
+                    addLog("Make-up clock-in successful for " + epochDays.length + " dates");
+                } else if (epochDays[0] == EpochDays.today()) {
+                    addLog("Clocked in successfully today");
+                } else {
+                    addLog("Make-up clock-in successful: " + EpochDays.format(epochDays[0]));
+                }
+            });
+        }
+
+        @Override
+        public void onClockInDataReset() {
+            runOnUiThread(() -> {
+                refreshCalendar();
+                updateClockInStatus();
+            });
         }
     };
 
@@ -69,30 +95,26 @@ public class MainActivity extends AppCompatActivity {
         Button btnNextMonth = findViewById(R.id.btn_next_month);
 
         // Initialize clock-in manager
-        clockInManager = new ClockInManager(this);
-        // Reset data on each launch
-        clockInManager.resetClockInData();
+        clockInManager = ClockInManager.getInstance(this);
 
         // Initialize date formatters
         monthFormat = new SimpleDateFormat("MMM yyyy", Locale.getDefault());
-        dayFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
         logTimeFormat = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
 
         // Initialize calendar
         currentCalendar = Calendar.getInstance();
 
-        // Set clock-in button click logic
-        myButton.setOnClickListener(v -> {
+        // Set clock-in button click logic; the store is used on sStoreExecutor, behind the launch reset
+        myButton.setOnClickListener(v -> sStoreExecutor.execute(() -> {
             if (clockInManager.hasClockedInToday()) {
-                addLog("Already clocked in today");
-                Toast.makeText(MainActivity.this, "You have already clocked in today", Toast.LENGTH_SHORT).show();
+                runOnUiThread(() -> {
+                    addLog("Already clocked in today");
+                    Toast.makeText(MainActivity.this, "You have already clocked in today", Toast.LENGTH_SHORT).show();
+                });
             } else {
-                clockInManager.clockInToday();
-                updateClockInStatus();
-                refreshCalendar();
-                addLog("Clocked in successfully today");
+                clockIn(EpochDays.today());
             }
-        });
+        }));
 
         // Previous month button
         btnPrevMonth.setOnClickListener(v -> {
@@ -106,18 +128,39 @@ public class MainActivity extends AppCompatActivity {
             refreshCalendar();
         });
 
-        // Initialize display
-        updateClockInStatus();
-        refreshCalendar();
         addLog("Application started");
+        clockInManager.addOnClockInChangedListener(clockInListener);
+        // Reset data on each launch. Clearing rewrites and fsyncs the store, so it runs off the main
+        // thread; clock-ins from the button and the gateway wait for it. The display is first drawn
+        // once it is done, by clockInListener or, if it failed, here.
+        clockInManager.resetClockInDataAsync(sStoreExecutor).exceptionally(error -> {
+            Log.e("MCPDemo", "Cannot reset clock-in data", error);
+            runOnUiThread(() -> {
+                addLog("Could not reset clock-in data");
+                updateClockInStatus();
+                refreshCalendar();
+            });
+            return null;
+        });
 
         // Register AI command broadcast receiver
         IntentFilter filter = new IntentFilter();
         filter.addAction("ACTION_AI_CLICK");
-        filter.addAction("ACTION_MAKE_UP_CLOCK_IN_SUCCESS");
         ContextCompat.registerReceiver(this, aiCommandReceiver, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
     }
 
+    /**
+     * Record a clock-in; runs on sStoreExecutor. The display is refreshed by clockInListener.
+     */
+    private void clockIn(int epochDay) {
+        try {
+            clockInManager.clockInDate(epochDay);
+        } catch (UncheckedIOException e) {
+            Log.e("MCPDemo", "Cannot record clock-in for " + EpochDays.format(epochDay), e);
+            runOnUiThread(() -> addLog("Could not record clock-in for " + EpochDays.format(epochDay)));
+        }
+    }
+
     /**
      * Add a log entry
      */
@@ -152,31 +195,31 @@ public class MainActivity extends AppCompatActivity {
 
         int year = currentCalendar.get(Calendar.YEAR);
         int month = currentCalendar.get(Calendar.MONTH) + 1;
-        HashMap<Integer, Boolean> clockInData = clockInManager.getMonthClockInData(year, month);
+        int clockInMask = clockInManager.getMonthClockInMask(year, month);
 
-        Calendar cal = (Calendar) currentCalendar.clone();
-        cal.set(Calendar.DAY_OF_MONTH, 1);
-        int firstDayOfWeek = cal.get(Calendar.DAY_OF_WEEK) - Calendar.MONDAY;
-        if (firstDayOfWeek < 0) firstDayOfWeek += 7;
+        int firstDay = EpochDays.of(year, month, 1);
+        int today = EpochDays.today();
+        // Columns start on Monday
+        int firstDayOfWeek = EpochDays.dayOfWeek(firstDay) - 1;
 
-        int lastDay = cal.getActualMaximum(Calendar.DAY_OF_MONTH);
+        int lastDay = EpochDays.lengthOfMonth(year, month);
 
         for (int i = 0; i < firstDayOfWeek; i++) {
             calendarGrid.addView(createDayView("", false, false, false));
         }
 
         for (int day = 1; day <= lastDay; day++) {
-            boolean isClockedIn = Boolean.TRUE.equals(clockInData.get(day));
-            boolean isToday = isToday(year, month, day);
-            boolean isPast = isPast(year, month, day);
+            int epochDay = firstDay + day - 1;
+            boolean isClockedIn = (clockInMask & (1 << (day - 1))) != 0;
+            boolean isToday = epochDay == today;
+            boolean isPast = epochDay < today;
 
             TextView dayView = createDayView(String.valueOf(day), isClockedIn, isToday, isPast);
 
             // Only set long-press make-up for past unchecked dates
             if (isPast && !isClockedIn) {
-                final int finalDay = day;
                 dayView.setOnLongClickListener(v -> {
-                    showMakeUpClockInDialog(year, month, finalDay);
+                    showMakeUpClockInDialog(epochDay);
                     return true;
                 });
             }
@@ -218,42 +261,16 @@ public class MainActivity extends AppCompatActivity {
         return textView;
     }
 
-    private boolean isToday(int year, int month, int day) {
-        Calendar today = Calendar.getInstance();
-        return today.get(Calendar.YEAR) == year && today.get(Calendar.MONTH) + 1 == month && today.get(Calendar.DAY_OF_MONTH) == day;
-    }
-
-    private boolean isPast(int year, int month, int day) {
-        Calendar target = Calendar.getInstance();
-        target.set(year, month - 1, day);
-        Calendar today = Calendar.getInstance();
-        target.set(Calendar.HOUR_OF_DAY, 0);
-        target.set(Calendar.MINUTE, 0);
-        target.set(Calendar.SECOND, 0);
-        target.set(Calendar.MILLISECOND, 0);
-        today.set(Calendar.HOUR_OF_DAY, 0);
-        today.set(Calendar.MINUTE, 0);
-        today.set(Calendar.SECOND, 0);
-        today.set(Calendar.MILLISECOND, 0);
-        return target.before(today);
-    }
-
     /**
      * Show make-up clock-in dialog
      */
-    private void showMakeUpClockInDialog(int year, int month, int day) {
-        Calendar cal = Calendar.getInstance();
-        cal.set(year, month - 1, day);
-        String dateStr = dayFormat.format(cal.getTime());
+    private void showMakeUpClockInDialog(int epochDay) {
+        String dateStr = EpochDays.format(epochDay);
 
         new androidx.appcompat.app.AlertDialog.Builder(this)
                 .setTitle("Make-up Clock-in")
                 .setMessage("Confirm make-up clock-in for " + dateStr + "?")
-                .setPositiveButton("Confirm", (dialog, which) -> {
-                    clockInManager.clockInDate(dateStr);
-                    refreshCalendar();
-                    addLog("Make-up clock-in successful: " + dateStr);
-                })
+                .setPositiveButton("Confirm", (dialog, which) -> sStoreExecutor.execute(() -> clockIn(epochDay)))
                 .setNegativeButton("Cancel", null)
                 .show();
     }
@@ -261,6 +278,7 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        clockInManager.removeOnClockInChangedListener(clockInListener);
         unregisterReceiver(aiCommandReceiver);
     }
 }
@@ -0,0 +1,379 @@
+package com.example.mcpdemo;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Capabilities declared in {@code res/xml/mcp_capabilities.xml}, each with its handler and a validator
+ * compiled from its {@code <input>} params.
+ * <p>
+ * The descriptor is read once; a request then costs one map lookup and one pass over the declared
+ * params, and handlers only see input that matches the descriptor. Besides the spec's {@code name},
+ * {@code type} and {@code required}, a capability may declare a {@code cost} (default 1), a
+ * {@code max_concurrency} (default unbounded), {@code read_only} and {@code streaming}, and a param may declare:
+ * <ul>
+ * <li>{@code format}: {@code date} (yyyy-MM-dd) or {@code content_uri}; applies to each element of an array</li>
+ * <li>{@code values}: allowed string values separated by {@code |}</li>
+ * <li>{@code max_items}: maximum length of an array</li>
+ * </ul>
+ */
+final class McpCapabilityRegistry {
+
+    /**
+     * Executes one capability
+     */
+    interface Handler {
+        /**
+         * Write status, message and, on success, the capability object into the open response envelope
+         *
+         * @param input Validated input, empty if the request had none
+         * @return true if the capability succeeded
+         */
+        boolean handle(String capabilityId, JSONObject input, McpJsonWriter out) throws Exception;
+    }
+
+    /**
+     * Executes one capability declared {@code streaming}, which may send partial output and progress first
+     */
+    interface StreamingHandler {
+        /**
+         * @param stream Frames sent ahead of the response, null if the caller did not ask for a stream
+         * @see Handler#handle
+         */
+        boolean handle(String capabilityId, JSONObject input, McpJsonWriter out, McpStream stream) throws Exception;
+    }
+
+    /**
+     * A declared capability
+     */
+    static final class Capability {
+        final String mId;
+        /** Weight against the per-caller rate limit and the global concurrency cap */
+        final int mCost;
+        /** Has no side effects, so concurrent identical calls may share one execution */
+        final boolean mReadOnly;
+        /** Sends partial output and progress to callers that ask for a stream */
+        final boolean mStreaming;
+        /** Concurrent executions allowed across all transports, null if only the worker pools bound them */
+        final Semaphore mLimit;
+        private final Param[] mParams;
+        private StreamingHandler mHandler;
+
+        Capability(String id, int cost, int maxConcurrency, boolean readOnly, boolean streaming, Param[] params) {
+            this.mId = id;
+            this.mCost = cost;
+            this.mLimit = maxConcurrency > 0 ? new Semaphore(maxConcurrency) : null;
+            this.mReadOnly = readOnly;
+            this.mStreaming = streaming;
+            this.mParams = params;
+        }
+
+        StreamingHandler handler() {
+            return mHandler;
+        }
+
+        /**
+         * Check an input against the declared params; undeclared fields are ignored
+         *
+         * @return null if valid, otherwise a message naming the first offending param
+         */
+        String validate(JSONObject input) {
+            for (Param param : mParams) {
+                String error = param.check(input.opt(param.mName));
+                if (error != null) {
+                    return error;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Param {
+        final String mName;
+        final String mType;
+        final boolean mRequired;
+        final String mFormat;
+        final Set<String> mValues;
+        final int mMaxItems;
+
+        Param(String name, String type, boolean required, String format, Set<String> values, int maxItems) {
+            this.mName = name;
+            this.mType = type;
+            this.mRequired = required;
+            this.mFormat = format;
+            this.mValues = values;
+            this.mMaxItems = maxItems;
+        }
+
+        String check(Object value) {
+            if (value == null || value == JSONObject.NULL) {
+                return mRequired ? "Missing required input " + mName + "." : null;
+            }
+            switch (mType) {
+                case "string":
+                    if (!(value instanceof String)) {
+                        return mName + " must be a string.";
+                    }
+                    return checkString(mName, (String) value);
+                case "integer":
+                    return value instanceof Integer || value instanceof Long ? null : mName + " must be an integer.";
+                case "number":
+                    return value instanceof Number ? null : mName + " must be a number.";
+                case "boolean":
+                    return value instanceof Boolean ? null : mName + " must be a boolean.";
+                case "object":
+                    return value instanceof JSONObject ? null : mName + " must be an object.";
+                case "array":
+                    if (!(value instanceof JSONArray)) {
+                        return mName + " must be an array.";
+                    }
+                    JSONArray array = (JSONArray) value;
+                    if (mRequired && array.length() == 0) {
+                        return mName + " must not be empty.";
+                    }
+                    if (array.length() > mMaxItems) {
+                        return mName + " must have at most " + mMaxItems + " items.";
+                    }
+                    if (mFormat != null || mValues != null) {
+                        for (int i = 0; i < array.length(); i++) {
+                            Object item = array.opt(i);
+                            String error = item instanceof String
+                                    ? checkString(mName + "[" + i + "]", (String) item)
+                                    : mName + "[" + i + "] must be a string.";
+                            if (error != null) {
+                                return error;
+                            }
+                        }
+                    }
+                    return null;
+                default:
+                    // Types this service does not know are passed through to the handler
+                    return null;
+            }
+        }
+
+        private String checkString(String name, String value) {
+            if (mValues != null && !mValues.contains(value)) {
+                // String.join needs API 26
+                StringBuilder expected = new StringBuilder();
+                for (String allowed : mValues) {
+                    expected.append(expected.length() == 0 ? "" : ", ").append(allowed);
+                }
+                return "Invalid " + name + ", expected one of " + expected + ".";
+            }
+            if ("date".equals(mFormat) && !EpochDays.isValid(value)) {
+                return "Invalid " + name + ", expected yyyy-MM-dd.";
+            }
+            if ("content_uri".equals(mFormat) && !value.startsWith("content://")) {
+                return name + " must be a content:// URI.";
+            }
+            return null;
+        }
+    }
+
+    // Limits used when the descriptor declares none
+    static final int DEFAULT_MAX_INLINE_RESPONSE = 128 * 1024;
+    static final int DEFAULT_RATE_PER_SECOND = 5;
+    static final int DEFAULT_RATE_BURST = 20;
+    static final int DEFAULT_MAX_CONCURRENT_COST = 8;
+
+    private final Map<String, Capability> mCapabilities;
+    private final int mMaxInlineResponse;
+    private final int mRatePerSecond;
+    private final int mRateBurst;
+    private final int mMaxConcurrentCost;
+
+    private McpCapabilityRegistry(Map<String, Capability> capabilities, int maxInlineResponse,
+                                  int ratePerSecond, int rateBurst, int maxConcurrentCost) {
+        this.mCapabilities = capabilities;
+        this.mMaxInlineResponse = maxInlineResponse;
+        this.mRatePerSecond = ratePerSecond;
+        this.mRateBurst = rateBurst;
+        this.mMaxConcurrentCost = maxConcurrentCost;
+    }
+
+    /**
+     * Compile a capability descriptor
+     *
+     * @param parser Positioned at the start of the document
+     */
+    static McpCapabilityRegistry load(XmlPullParser parser) throws XmlPullParserException, IOException {
+        Map<String, Capability> capabilities = new HashMap<>();
+        String id = null;
+        List<Param> params = new ArrayList<>();
+        boolean inInput = false;
+        int maxInlineResponse = DEFAULT_MAX_INLINE_RESPONSE;
+        int ratePerSecond = DEFAULT_RATE_PER_SECOND;
+        int rateBurst = DEFAULT_RATE_BURST;
+        int maxConcurrentCost = DEFAULT_MAX_CONCURRENT_COST;
+        int cost = 1;
+        int maxConcurrency = 0;
+        boolean readOnly = false;
+        boolean streaming = false;
+        for (int event = parser.getEventType(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+            if (event == XmlPullParser.START_TAG) {
+                switch (parser.getName()) {
+                    case "mobile-mcp-capabilities":
+                        maxInlineResponse = intAttribute(parser, "max_inline_response_bytes", maxInlineResponse);
+                        ratePerSecond = intAttribute(parser, "rate_limit_per_second", ratePerSecond);
+                        rateBurst = intAttribute(parser, "rate_limit_burst", rateBurst);
+                        maxConcurrentCost = intAttribute(parser, "max_concurrent_cost", maxConcurrentCost);
+                        break;
+                    case "capability":
+                        id = parser.getAttributeValue(null, "id");
+                        cost = intAttribute(parser, "cost", 1);
+                        maxConcurrency = intAttribute(parser, "max_concurrency", 0);
+                        readOnly = "true".equals(parser.getAttributeValue(null, "read_only"));
+                        streaming = "true".equals(parser.getAttributeValue(null, "streaming"));
+                        params.clear();
+                        break;
+                    case "input":
+                        inInput = true;
+                        break;
+                    case "param":
+                        if (inInput) {
+                            params.add(parseParam(parser));
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            } else if (event == XmlPullParser.END_TAG) {
+                if ("input".equals(parser.getName())) {
+                    inInput = false;
+                } else if ("capability".equals(parser.getName()) && id != null) {
+                    capabilities.put(id, new Capability(id, cost, maxConcurrency, readOnly, streaming, params.toArray(new Param[0])));
+                    id = null;
+                }
+            }
+        }
+        return new McpCapabilityRegistry(capabilities, maxInlineResponse, ratePerSecond, rateBurst, maxConcurrentCost);
+    }
+
+    private static int intAttribute(XmlPullParser parser, String name, int fallback) throws XmlPullParserException {
+        String value = parser.getAttributeValue(null, name);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new XmlPullParserException(name + " must be a positive integer: " + value, parser, null);
+    }
+
+    private static Param parseParam(XmlPullParser parser) throws XmlPullParserException {
+        String name = parser.getAttributeValue(null, "name");
+        if (name == null) {
+            throw new XmlPullParserException("param without name", parser, null);
+        }
+        String type = parser.getAttributeValue(null, "type");
+        String values = parser.getAttributeValue(null, "values");
+        String maxItems = parser.getAttributeValue(null, "max_items");
+        return new Param(name,
+                type != null ? type : "string",
+                "true".equals(parser.getAttributeValue(null, "required")),
+                parser.getAttributeValue(null, "format"),
+                values != null ? new LinkedHashSet<>(Arrays.asList(values.split("\\|"))) : null,
+                maxItems != null ? Integer.parseInt(maxItems) : Integer.MAX_VALUE);
+    }
+
+    /**
+     * Largest response, in UTF-8 bytes, returned inline in the {@code response} extra or binder reply;
+     * declared by the {@code max_inline_response_bytes} attribute of the descriptor's root element
+     */
+    int maxInlineResponse() {
+        return mMaxInlineResponse;
+    }
+
+    /**
+     * Tokens per second refilled into each caller's bucket; {@code rate_limit_per_second} on the root element
+     */
+    int ratePerSecond() {
+        return mRatePerSecond;
+    }
+
+    /**
+     * Size of each caller's bucket; {@code rate_limit_burst} on the root element
+     */
+    int rateBurst() {
+        return mRateBurst;
+    }
+
+    /**
+     * Total cost of capabilities allowed to execute at once; {@code max_concurrent_cost} on the root element
+     */
+    int maxConcurrentCost() {
+        return mMaxConcurrentCost;
+    }
+
+    /**
+     * Attach the handler of a declared capability
+     *
+     * @throws IllegalStateException if the descriptor does not declare {@code id}
+     */
+    void bind(String id, Handler handler) {
+        bind(id, (capabilityId, input, out, stream) -> handler.handle(capabilityId, input, out));
+    }
+
+    /**
+     * Attach a handler that can stream; it only gets a stream if the capability is declared {@code streaming}
+     *
+     * @throws IllegalStateException if the descriptor does not declare {@code id}
+     */
+    void bind(String id, StreamingHandler handler) {
+        Capability capability = mCapabilities.get(id);
+        if (capability == null) {
+            throw new IllegalStateException("Capability " + id + " is not declared in mcp_capabilities.xml");
+        }
+        capability.mHandler = handler;
+    }
+
+    /**
+     * @return The capability, null if it is not declared or has no handler
+     */
+    Capability get(String id) {
+        Capability capability = mCapabilities.get(id);
+        return capability != null && capability.mHandler != null ? capability : null;
+    }
+
+    /**
+     * Check every entry of a batch envelope, so a malformed entry rejects the batch before any entry runs
+     *
+     * @return null if every entry names a capability and has valid input, otherwise a message naming the
+     * first offending entry
+     */
+    String validateBatch(List<McpRequest> entries) {
+        for (int i = 0; i < entries.size(); i++) {
+            McpRequest entry = entries.get(i);
+            if (entry.mCapabilityId == null) {
+                return "Missing capability in batch entry " + i + ".";
+            }
+            Capability capability = get(entry.mCapabilityId);
+            if (capability == null) {
+                return "Unknown capability ID in batch entry " + i + ": " + entry.mCapabilityId;
+            }
+            String invalid = entry.mInputError != null ? entry.mInputError : capability.validate(entry.mInput);
+            if (invalid != null) {
+                return "Batch entry " + i + ": " + invalid;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.mcpdemo;
+
+/**
+ * Streaming JSON writer for MCP responses. Values are appended to one buffer as they are produced,
+ * so a response never exists as a tree of {@code JSONObject}s.
+ * <p>
+ * The writer only inserts separators; callers are trusted to balance begin/end calls and to write a
+ * name before each object member.
+ */
+final class McpJsonWriter {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder mOut;
+    // Whether the container at each depth has no element yet
+    private boolean[] mEmpty = new boolean[8];
+    private int mDepth;
+    private boolean mAfterName;
+
+    McpJsonWriter() {
+        this(256);
+    }
+
+    McpJsonWriter(int capacity) {
+        this.mOut = new StringBuilder(capacity);
+    }
+
+    McpJsonWriter beginObject() {
+        return open('{');
+    }
+
+    McpJsonWriter endObject() {
+        return close('}');
+    }
+
+    McpJsonWriter beginArray() {
+        return open('[');
+    }
+
+    McpJsonWriter endArray() {
+        return close(']');
+    }
+
+    McpJsonWriter name(String name) {
+        separate();
+        string(name);
+        mOut.append(':');
+        mAfterName = true;
+        return this;
+    }
+
+    McpJsonWriter value(String value) {
+        separate();
+        if (value == null) {
+            mOut.append("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    McpJsonWriter value(long value) {
+        separate();
+        mOut.append(value);
+        return this;
+    }
+
+    /**
+     * Write a number; integral values are written without a fraction, as {@code JSONObject} does
+     *
+     * @throws IllegalArgumentException if the value is NaN or infinite
+     */
+    McpJsonWriter value(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Non-finite number: " + value);
+        }
+        separate();
+        if (value == (long) value) {
+            mOut.append((long) value);
+        } else {
+            mOut.append(value);
+        }
+        return this;
+    }
+
+    McpJsonWriter value(boolean value) {
+        separate();
+        mOut.append(value);
+        return this;
+    }
+
+    /**
+     * Append an already encoded JSON value, such as a response produced by another writer
+     */
+    McpJsonWriter rawValue(String json) {
+        separate();
+        mOut.append(json);
+        return this;
+    }
+
+    /**
+     * The JSON written so far
+     */
+    @Override
+    public String toString() {
+        return mOut.toString();
+    }
+
+    private McpJsonWriter open(char bracket) {
+        separate();
+        mOut.append(bracket);
+        if (mDepth == mEmpty.length) {
+            boolean[] empty = new boolean[mDepth * 2];
+            System.arraycopy(mEmpty, 0, empty, 0, mDepth);
+            mEmpty = empty;
+        }
+        mEmpty[mDepth++] = true;
+        return this;
+    }
+
+    private McpJsonWriter close(char bracket) {
+        mDepth--;
+        mOut.append(bracket);
+        return this;
+    }
+
+    private void separate() {
+        if (mAfterName) {
+            mAfterName = false;
+        } else if (mDepth > 0) {
+            if (mEmpty[mDepth - 1]) {
+                mEmpty[mDepth - 1] = false;
+            } else {
+                mOut.append(',');
+            }
+        }
+    }
+
+    private void string(String value) {
+        mOut.append('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String escape;
+            switch (c) {
+                case '"':
+                    escape = "\\\"";
+                    break;
+                case '\\':
+                    escape = "\\\\";
+                    break;
+                case '\n':
+                    escape = "\\n";
+                    break;
+                case '\r':
+                    escape = "\\r";
+                    break;
+                case '\t':
+                    escape = "\\t";
+                    break;
+                default:
+                    // Control characters, and the separators JavaScript does not accept in strings
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        escape = null;
+                        break;
+                    }
+                    continue;
+            }
+            mOut.append(value, start, i);
+            if (escape != null) {
+                mOut.append(escape);
+            } else {
+                mOut.append("\\u").append(HEX[c >> 12]).append(HEX[(c >> 8) & 0xF])
+                        .append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+            }
+            start = i + 1;
+        }
+        mOut.append(value, start, value.length());
+        mOut.append('"');
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.mcpdemo;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gateway instrumentation: request counts and latency histograms for the stages of a request.
+ * <p>
+ * Parsing and sending the response are measured per transport request; validation, execution and
+ * outcomes per capability. Everything is lock-free, so recording costs a few atomic operations on
+ * the request path.
+ */
+final class McpMetrics {
+
+    /**
+     * Numbers of one capability
+     */
+    static final class CapabilityMetrics {
+        final McpLatencyHistogram mValidate = new McpLatencyHistogram();
+        final McpLatencyHistogram mExecute = new McpLatencyHistogram();
+        final AtomicLong mCalls = new AtomicLong();
+        final AtomicLong mFailures = new AtomicLong();
+        final AtomicLong mBusy = new AtomicLong();
+        // Calls answered by an identical call that was already running
+        final AtomicLong mCoalesced = new AtomicLong();
+
+        /**
+         * Failed calls as a fraction of all calls, busy ones included
+         */
+        double errorRate() {
+            long calls = mCalls.get();
+            return calls == 0 ? 0 : (double) mFailures.get() / calls;
+        }
+    }
+
+    private final long mStartedAt = System.nanoTime();
+    private final McpLatencyHistogram mParse = new McpLatencyHistogram();
+    private final McpLatencyHistogram mSend = new McpLatencyHistogram();
+    private final AtomicLong mRequests = new AtomicLong();
+    private final AtomicLong mRejected = new AtomicLong();
+    private final AtomicLong mRateLimited = new AtomicLong();
+    private final AtomicInteger mPeakQueueDepth = new AtomicInteger();
+    private final ConcurrentHashMap<String, CapabilityMetrics> mCapabilities = new ConcurrentHashMap<>();
+
+    /**
+     * Record the parse time of a transport request
+     */
+    void recordParse(long nanos) {
+        mRequests.incrementAndGet();
+        mParse.record(nanos);
+    }
+
+    /**
+     * Record the time spent handing a response to the transport
+     */
+    void recordSend(long nanos) {
+        mSend.record(nanos);
+    }
+
+    /**
+     * Count a request turned away because the request queue was full
+     */
+    void recordRejected() {
+        mRejected.incrementAndGet();
+    }
+
+    /**
+     * Count a request turned away because its caller ran out of tokens
+     */
+    void recordRateLimited() {
+        mRateLimited.incrementAndGet();
+    }
+
+    /**
+     * Note the request queue depth after an enqueue
+     */
+    void recordQueueDepth(int depth) {
+        int peak = mPeakQueueDepth.get();
+        while (depth > peak && !mPeakQueueDepth.compareAndSet(peak, depth)) {
+            peak = mPeakQueueDepth.get();
+        }
+    }
+
+    /**
+     * Metrics of a capability; only call with declared capability ids, each id gets an entry for good
+     */
+    CapabilityMetrics capability(String id) {
+        CapabilityMetrics metrics = mCapabilities.get(id);
+        if (metrics == null) {
+            metrics = mCapabilities.computeIfAbsent(id, key -> new CapabilityMetrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * Write the metrics as the members of an output object
+     *
+     * @param queueDepth Requests waiting for a worker right now
+     */
+    void writeTo(McpJsonWriter out, int queueDepth) {
+        long uptime = System.nanoTime() - mStartedAt;
+        out.name("uptime_ms").value(uptime / 1_000_000);
+        out.name("requests").value(mRequests.get());
+        out.name("rejected").value(mRejected.get());
+        out.name("rate_limited").value(mRateLimited.get());
+        out.name("queue_depth").value(queueDepth);
+        out.name("peak_queue_depth").value(mPeakQueueDepth.get());
+        writeHistogram(out.name("parse"), mParse);
+        writeHistogram(out.name("send"), mSend);
+        out.name("capabilities").beginArray();
+        for (Map.Entry<String, CapabilityMetrics> entry : sorted().entrySet()) {
+            CapabilityMetrics metrics = entry.getValue();
+            long calls = metrics.mCalls.get();
+            out.beginObject();
+            out.name("id").value(entry.getKey());
+            out.name("calls").value(calls);
+            out.name("failures").value(metrics.mFailures.get());
+            out.name("busy").value(metrics.mBusy.get());
+            out.name("coalesced").value(metrics.mCoalesced.get());
+            out.name("error_rate").value(Math.round(metrics.errorRate() * 10000.0) / 10000.0);
+            out.name("calls_per_minute").value(uptime == 0 ? 0 : Math.round(calls * 60e9 / uptime * 100.0) / 100.0);
+            writeHistogram(out.name("validate"), metrics.mValidate);
+            writeHistogram(out.name("execute"), metrics.mExecute);
+            out.endObject();
+        }
+        out.endArray();
+    }
+
+    /**
+     * Write the metrics as text, for dumpsys
+     */
+    void dump(PrintWriter writer, int queueDepth) {
+        writer.println("requests: " + mRequests.get() + ", rejected: " + mRejected.get()
+                + ", rate limited: " + mRateLimited.get()
+                + ", queue depth: " + queueDepth + " (peak " + mPeakQueueDepth.get() + ")");
+        writer.println("  parse    " + describe(mParse));
+        writer.println("  send     " + describe(mSend));
+        for (Map.Entry<String, CapabilityMetrics> entry : sorted().entrySet()) {
+            CapabilityMetrics metrics = entry.getValue();
+            writer.println(entry.getKey() + ": " + metrics.mCalls.get() + " calls, " + metrics.mFailures.get()
+                    + " failures (" + metrics.mBusy.get() + " busy), " + metrics.mCoalesced.get() + " coalesced");
+            writer.println("  validate " + describe(metrics.mValidate));
+            writer.println("  execute  " + describe(metrics.mExecute));
+        }
+    }
+
+    private Map<String, CapabilityMetrics> sorted() {
+        return new TreeMap<>(mCapabilities);
+    }
+
+    private static void writeHistogram(McpJsonWriter out, McpLatencyHistogram histogram) {
+        out.beginObject();
+        out.name("count").value(histogram.count());
+        out.name("mean_us").value(histogram.mean() / 1000);
+        out.name("p50_us").value(histogram.quantile(0.5) / 1000);
+        out.name("p90_us").value(histogram.quantile(0.9) / 1000);
+        out.name("p99_us").value(histogram.quantile(0.99) / 1000);
+        out.name("max_us").value(histogram.max() / 1000);
+        out.endObject();
+    }
+
+    private static String describe(McpLatencyHistogram histogram) {
+        return "n=" + histogram.count() + " mean=" + histogram.mean() / 1000 + "us p50=" + histogram.quantile(0.5) / 1000
+                + "us p90=" + histogram.quantile(0.9) / 1000 + "us p99=" + histogram.quantile(0.99) / 1000
+                + "us max=" + histogram.max() / 1000 + "us";
+    }
+}
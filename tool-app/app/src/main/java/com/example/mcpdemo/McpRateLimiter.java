@@ -0,0 +1,85 @@
+package com.example.mcpdemo;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets per calling package: each caller may spend {@code burst} tokens at once, refilled at
+ * {@code perSecond}. A request spends the cost of its capabilities, so a caller of expensive
+ * capabilities gets fewer of them through.
+ */
+final class McpRateLimiter {
+
+    // Buckets that are full again carry no state; they are dropped once this many callers are tracked
+    private static final int SWEEP_THRESHOLD = 64;
+
+    private static final class Bucket {
+        double mTokens;
+        long mUpdatedAt;
+    }
+
+    private final double mPerMillis;
+    private final double mBurst;
+    private final LongSupplier mClock;
+    private final HashMap<String, Bucket> mBuckets = new HashMap<>();
+
+    /**
+     * @param clock Milliseconds of a monotonic clock
+     */
+    McpRateLimiter(double perSecond, int burst, LongSupplier clock) {
+        this.mPerMillis = perSecond / 1000;
+        this.mBurst = burst;
+        this.mClock = clock;
+    }
+
+    /**
+     * Spend tokens of a caller
+     *
+     * @param cost Tokens to spend, at most a full bucket is asked for
+     * @return 0 if the tokens were spent, otherwise milliseconds until the caller has enough
+     */
+    long tryAcquire(String caller, int cost) {
+        double need = Math.min(cost, mBurst);
+        synchronized (mBuckets) {
+            long now = mClock.getAsLong();
+            Bucket bucket = mBuckets.get(caller);
+            if (bucket == null) {
+                if (mBuckets.size() >= SWEEP_THRESHOLD) {
+                    sweep(now);
+                }
+                bucket = new Bucket();
+                bucket.mTokens = mBurst;
+                bucket.mUpdatedAt = now;
+                mBuckets.put(caller, bucket);
+            }
+            bucket.mTokens = Math.min(mBurst, bucket.mTokens + (now - bucket.mUpdatedAt) * mPerMillis);
+            bucket.mUpdatedAt = now;
+            if (bucket.mTokens >= need) {
+                bucket.mTokens -= need;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((need - bucket.mTokens) / mPerMillis));
+        }
+    }
+
+    /**
+     * Number of callers with a bucket
+     */
+    int callers() {
+        synchronized (mBuckets) {
+            return mBuckets.size();
+        }
+    }
+
+    // Caller holds mBuckets
+    private void sweep(long now) {
+        Iterator<Bucket> it = mBuckets.values().iterator();
+        while (it.hasNext()) {
+            Bucket bucket = it.next();
+            if (bucket.mTokens + (now - bucket.mUpdatedAt) * mPerMillis >= mBurst) {
+                it.remove();
+            }
+        }
+    }
+}
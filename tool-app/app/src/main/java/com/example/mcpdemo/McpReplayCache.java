@@ -0,0 +1,153 @@
+package com.example.mcpdemo;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Replays responses of repeated requests: the first request with a key executes, repeats while it runs
+ * wait for its result, and repeats after it finished get the same result until it expires.
+ * <p>
+ * Entries are kept in least-recently-used order, at most {@code capacity} of them, each for
+ * {@code ttlMillis} after it completed. Results rejected by the retain predicate, and failures, are
+ * only shared with requests that attached while they ran.
+ */
+final class McpReplayCache<V> {
+
+    private static final class Entry<V> {
+        final CompletableFuture<V> mResult = new CompletableFuture<>();
+        // Set once the result is retained, until then the entry is in flight
+        long mExpiresAt = Long.MAX_VALUE;
+    }
+
+    private final int mCapacity;
+    private final long mTtlMillis;
+    private final LongSupplier mClock;
+    private final Predicate<V> mRetain;
+    private final LinkedHashMap<String, Entry<V>> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param clock  Milliseconds of a monotonic clock
+     * @param retain Whether a completed result may be replayed later
+     */
+    McpReplayCache(int capacity, long ttlMillis, LongSupplier clock, Predicate<V> retain) {
+        this.mCapacity = capacity;
+        this.mTtlMillis = ttlMillis;
+        this.mClock = clock;
+        this.mRetain = retain;
+    }
+
+    /**
+     * Execute {@code work} unless a request with the same key is running or was answered recently
+     *
+     * @return The result of this or the earlier execution
+     * @throws RuntimeException thrown by the execution this call ran or attached to
+     */
+    V execute(String key, Supplier<V> work) {
+        Entry<V> entry;
+        boolean owner = false;
+        synchronized (mEntries) {
+            long now = mClock.getAsLong();
+            entry = mEntries.get(key);
+            if (entry != null && entry.mExpiresAt <= now) {
+                mEntries.remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry<>();
+                mEntries.put(key, entry);
+                owner = true;
+                trim(now);
+            }
+        }
+        if (!owner) {
+            return await(entry);
+        }
+
+        V result;
+        try {
+            result = work.get();
+        } catch (RuntimeException | Error e) {
+            forget(key, entry);
+            entry.mResult.completeExceptionally(e);
+            throw e;
+        }
+        if (mRetain.test(result)) {
+            synchronized (mEntries) {
+                entry.mExpiresAt = mClock.getAsLong() + mTtlMillis;
+            }
+        } else {
+            forget(key, entry);
+        }
+        entry.mResult.complete(result);
+        return result;
+    }
+
+    /**
+     * Number of entries, running ones included
+     */
+    int size() {
+        synchronized (mEntries) {
+            return mEntries.size();
+        }
+    }
+
+    private void forget(String key, Entry<V> entry) {
+        synchronized (mEntries) {
+            // The key may have expired and been taken by a newer request
+            if (mEntries.get(key) == entry) {
+                mEntries.remove(key);
+            }
+        }
+    }
+
+    // Caller holds mEntries
+    private void trim(long now) {
+        Iterator<Entry<V>> it = mEntries.values().iterator();
+        int excess = mEntries.size() - mCapacity;
+        while (it.hasNext()) {
+            Entry<V> entry = it.next();
+            // Evict from the least recently used end: over capacity, or expired
+            if (excess > 0) {
+                it.remove();
+                excess--;
+            } else if (entry.mExpiresAt <= now) {
+                it.remove();
+            } else {
+                break;
+            }
+        }
+    }
+
+    private static <V> V await(Entry<V> entry) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return entry.mResult.get();
+                } catch (InterruptedException e) {
+                    // The running execution still answers, keep waiting for it
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.mcpdemo;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A request envelope, read in one streaming pass.
+ * <p>
+ * Only {@code capability.input} is materialized as a {@code JSONObject}, for the validator and the
+ * handlers; every other field is read into a plain field and unknown fields are skipped. The input may
+ * be the nested object of the spec or, as in earlier clients, a string holding one; the string is
+ * parsed directly from the token instead of after building the whole envelope.
+ */
+final class McpRequest {
+
+    final String mId;
+    /** Capability id, null if the envelope has none */
+    final String mCapabilityId;
+    /** Capability input, empty if the envelope has none */
+    final JSONObject mInput;
+    /** Why the input could not be read, null if it could */
+    final String mInputError;
+    /** Entries of a batch envelope, null if this is not one */
+    final List<McpRequest> mBatch;
+    final String mMode;
+    final boolean mStopOnFailure;
+    /** Inline response limit asked for by the caller, 0 if none */
+    final int mMaxInlineResponse;
+    /** Whether the caller asked for partial output and progress frames ahead of the response */
+    final boolean mStream;
+
+    McpRequest(String id, String capabilityId, JSONObject input, String inputError, List<McpRequest> batch,
+               String mode, boolean stopOnFailure, int maxInlineResponse, boolean stream) {
+        this.mId = id;
+        this.mCapabilityId = capabilityId;
+        this.mInput = input;
+        this.mInputError = inputError;
+        this.mBatch = batch;
+        this.mMode = mode;
+        this.mStopOnFailure = stopOnFailure;
+        this.mMaxInlineResponse = maxInlineResponse;
+        this.mStream = stream;
+    }
+
+    /**
+     * @throws IOException if the request is not a JSON object
+     */
+    static McpRequest parse(String json) throws IOException {
+        if (json == null) {
+            throw new IOException("No request");
+        }
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            return readEnvelope(reader, true);
+        } catch (IllegalStateException | NumberFormatException e) {
+            // Token of an unexpected type
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read the request id only, for answering requests that are rejected before parsing
+     *
+     * @return The id, empty if the request has none or is not JSON
+     */
+    static String idOf(String json) {
+        if (json == null) {
+            return "";
+        }
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("id".equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                    return reader.nextString();
+                }
+                reader.skipValue();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Fall through
+        }
+        return "";
+    }
+
+    private static McpRequest readEnvelope(JsonReader reader, boolean allowBatch) throws IOException {
+        String id = "";
+        String capabilityId = null;
+        JSONObject input = new JSONObject();
+        String inputError = null;
+        List<McpRequest> batch = null;
+        String mode = "sequential";
+        boolean stopOnFailure = false;
+        int maxInlineResponse = 0;
+        boolean stream = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("id".equals(name) && reader.peek() == JsonToken.STRING) {
+                id = reader.nextString();
+            } else if ("capability".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                capabilityId = "";
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String field = reader.nextName();
+                    if ("id".equals(field) && reader.peek() == JsonToken.STRING) {
+                        capabilityId = reader.nextString();
+                    } else if ("input".equals(field)) {
+                        // Syntax errors fail the envelope, the reader cannot go on after them
+                        input = readInput(reader);
+                        if (input == null) {
+                            input = new JSONObject();
+                            inputError = "input must be a JSON object.";
+                        }
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if (allowBatch && "batch".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                batch = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    batch.add(readEnvelope(reader, false));
+                }
+                reader.endArray();
+            } else if ("mode".equals(name) && reader.peek() == JsonToken.STRING) {
+                mode = reader.nextString();
+            } else if ("stop_on_failure".equals(name) && reader.peek() == JsonToken.BOOLEAN) {
+                stopOnFailure = reader.nextBoolean();
+            } else if ("max_inline_response_bytes".equals(name) && reader.peek() == JsonToken.NUMBER) {
+                maxInlineResponse = Math.max(0, reader.nextInt());
+            } else if ("stream".equals(name) && reader.peek() == JsonToken.BOOLEAN) {
+                stream = reader.nextBoolean();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new McpRequest(id, capabilityId, input, inputError,
+                batch != null ? Collections.unmodifiableList(batch) : null, mode, stopOnFailure, maxInlineResponse, stream);
+    }
+
+    /**
+     * Read the value of {@code capability.input}, all of it
+     *
+     * @return The input, null if it is not an object org.json can hold
+     * @throws IOException if the envelope is not well-formed JSON
+     */
+    private static JSONObject readInput(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case NULL:
+                reader.nextNull();
+                return new JSONObject();
+            case BEGIN_OBJECT:
+                return readObject(reader);
+            case STRING:
+                // Legacy form: the object encoded as a string, its errors are the input's and not the envelope's
+                String encoded = reader.nextString();
+                if (encoded.isEmpty()) {
+                    return new JSONObject();
+                }
+                try (JsonReader inner = new JsonReader(new StringReader(encoded))) {
+                    if (inner.peek() != JsonToken.BEGIN_OBJECT) {
+                        return null;
+                    }
+                    JSONObject input = readObject(inner);
+                    return inner.peek() == JsonToken.END_DOCUMENT ? input : null;
+                } catch (IOException | IllegalStateException e) {
+                    return null;
+                }
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    /**
+     * Read an object; a value org.json cannot hold, a number beyond the range of double, is read to its
+     * end and makes the object null, so the reader always stops after the object
+     */
+    private static JSONObject readObject(JsonReader reader) throws IOException {
+        JSONObject object = new JSONObject();
+        boolean valid = true;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            Object value = readValue(reader);
+            if (value == null) {
+                valid = false;
+            } else if (valid) {
+                try {
+                    object.put(name, value);
+                } catch (JSONException e) {
+                    valid = false;
+                }
+            }
+        }
+        reader.endObject();
+        return valid ? object : null;
+    }
+
+    /**
+     * @return The value, null if org.json cannot hold it
+     * @see #readObject
+     */
+    private static Object readValue(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+            case BEGIN_ARRAY:
+                JSONArray array = new JSONArray();
+                boolean valid = true;
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    Object item = readValue(reader);
+                    if (item == null) {
+                        valid = false;
+                    } else {
+                        array.put(item);
+                    }
+                }
+                reader.endArray();
+                return valid ? array : null;
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                // Integers stay integral so the validator can tell them from fractions
+                String number = reader.nextString();
+                try {
+                    return Long.parseLong(number);
+                } catch (NumberFormatException e) {
+                    double value = Double.parseDouble(number);
+                    return Double.isInfinite(value) ? null : value;
+                }
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                throw new IOException("Unexpected " + reader.peek());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.mcpdemo;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Coalescing of identical read-only calls: the key two calls share, and the shared response handed
+ * to each caller under its own request id.
+ */
+final class McpSharedCalls {
+
+    /** Request id a shared execution writes its response under */
+    static final String SHARED_ID = "";
+    // Start of a response envelope written under SHARED_ID
+    private static final String SHARED_ID_PREFIX = "{\"id\":\"\"";
+
+    private McpSharedCalls() {
+    }
+
+    /**
+     * Key of a call that does not depend on the order of the input fields
+     */
+    static String key(String capabilityId, JSONObject input) {
+        List<String> names = new ArrayList<>();
+        for (Iterator<String> it = input.keys(); it.hasNext(); ) {
+            names.add(it.next());
+        }
+        Collections.sort(names);
+        StringBuilder key = new StringBuilder(capabilityId).append('\n');
+        McpJsonWriter quoted = new McpJsonWriter();
+        quoted.beginArray();
+        for (String name : names) {
+            Object value = input.opt(name);
+            quoted.value(name);
+            // Nested objects and arrays keep their field order, identical calls then only miss a share
+            if (value instanceof String) {
+                quoted.value((String) value);
+            } else {
+                quoted.rawValue(String.valueOf(value));
+            }
+        }
+        quoted.endArray();
+        return key.append(quoted).toString();
+    }
+
+    /**
+     * Put a caller's request id into a response written under {@link #SHARED_ID}
+     *
+     * @throws IllegalArgumentException if the response does not start with the shared id
+     */
+    static String withId(String sharedJson, String requestId) {
+        if (!sharedJson.startsWith(SHARED_ID_PREFIX)) {
+            throw new IllegalArgumentException("Not a shared response: " + sharedJson);
+        }
+        McpJsonWriter id = new McpJsonWriter();
+        id.value(requestId);
+        return "{\"id\":" + id + sharedJson.substring(SHARED_ID_PREFIX.length());
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.mcpdemo;
+
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Frames of a streamed response: partial outputs and progress, each sent as its own callback, then the
+ * terminal response. Every frame carries the request id, {@code seq} counting from 0 and {@code final},
+ * which only the terminal frame has set.
+ * <p>
+ * Frames are numbered and sent under the stream's lock, so a caller receives them in order even if a
+ * handler reports from several threads.
+ */
+final class McpStream {
+
+    /**
+     * Hands one frame to the transport
+     */
+    interface Sender {
+        void send(String frame);
+    }
+
+    // Progress frames closer together than this are dropped, partial outputs are always sent
+    static final long PROGRESS_INTERVAL_MS = 250;
+
+    private final String mRequestId;
+    private final String mCapabilityId;
+    private final Sender mSender;
+    private final LongSupplier mClock;
+    private int mSeq;
+    private long mLastProgressAt = Long.MIN_VALUE;
+    private boolean mFinished;
+
+    /**
+     * @param clock Milliseconds of a monotonic clock
+     */
+    McpStream(String requestId, String capabilityId, Sender sender, LongSupplier clock) {
+        this.mRequestId = requestId;
+        this.mCapabilityId = capabilityId;
+        this.mSender = sender;
+        this.mClock = clock;
+    }
+
+    /**
+     * Send a part of the output
+     *
+     * @param output Writes the members of the partial output object
+     */
+    synchronized void partial(Consumer<McpJsonWriter> output) {
+        if (mFinished) {
+            return;
+        }
+        McpJsonWriter out = begin("partial");
+        out.name("capability").beginObject();
+        out.name("id").value(mCapabilityId);
+        out.name("output").beginObject();
+        output.accept(out);
+        out.endObject().endObject();
+        send(out);
+    }
+
+    /**
+     * Report progress, at most once per {@link #PROGRESS_INTERVAL_MS}
+     *
+     * @param total Units of work in all, negative if unknown
+     * @return true if a frame was sent
+     */
+    synchronized boolean progress(long done, long total) {
+        long now = mClock.getAsLong();
+        if (mFinished || (mLastProgressAt != Long.MIN_VALUE && now - mLastProgressAt < PROGRESS_INTERVAL_MS)) {
+            return false;
+        }
+        mLastProgressAt = now;
+        McpJsonWriter out = begin("progress");
+        out.name("progress").beginObject();
+        out.name("done").value(done);
+        if (total >= 0) {
+            out.name("total").value(total);
+        }
+        out.endObject();
+        send(out);
+        return true;
+    }
+
+    /**
+     * Turn the response envelope into the terminal frame; later partials and progress are dropped
+     *
+     * @param response Response envelope, a JSON object
+     * @return The envelope with {@code seq} and {@code final} added
+     */
+    synchronized String finish(String response) {
+        mFinished = true;
+        int end = response.lastIndexOf('}');
+        return response.substring(0, end) + ",\"seq\":" + mSeq++ + ",\"final\":true}";
+    }
+
+    private McpJsonWriter begin(String status) {
+        McpJsonWriter out = new McpJsonWriter();
+        out.beginObject();
+        out.name("id").value(mRequestId);
+        out.name("seq").value(mSeq++);
+        out.name("final").value(false);
+        out.name("status").value(status);
+        return out;
+    }
+
+    private void send(McpJsonWriter out) {
+        out.endObject();
+        mSender.send(out.toString());
+    }
+}
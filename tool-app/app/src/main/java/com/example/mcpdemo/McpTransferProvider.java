@@ -0,0 +1,177 @@
+package com.example.mcpdemo;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands large capability payloads to MCP callers through a file descriptor instead of an Intent extra.
+ * <p>
+ * A capability registers a {@link Producer} and returns the URI in its response. The caller opens the
+ * URI once with {@code ContentResolver#openInputStream} and the producer streams into a pipe, so the
+ * payload is never held in memory as a whole. URIs carry an unguessable token and work once, within
+ * {@link #TTL_MS} of the response.
+ */
+public class McpTransferProvider extends ContentProvider {
+
+    private static final String AUTHORITY_SUFFIX = ".transfer";
+    static final long TTL_MS = 60_000;
+
+    /**
+     * Writes a payload; called on a transfer thread when the caller opens the URI
+     */
+    interface Producer {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static final class Transfer {
+        final String mMimeType;
+        final Producer mProducer;
+        final long mExpiresAt;
+
+        Transfer(String mimeType, Producer producer, long expiresAt) {
+            this.mMimeType = mimeType;
+            this.mProducer = producer;
+            this.mExpiresAt = expiresAt;
+        }
+    }
+
+    private static final Map<String, Transfer> sTransfers = new HashMap<>();
+    private static final SecureRandom sRandom = new SecureRandom();
+    private static final AtomicInteger sThreadCount = new AtomicInteger();
+    // Producers run here; an escaped error is logged instead of taking the process down
+    private static final ExecutorService sProducers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "McpTransfer-" + sThreadCount.incrementAndGet());
+        thread.setUncaughtExceptionHandler((t, e) -> Log.e("MCPDemo", "Transfer thread died", e));
+        return thread;
+    });
+
+    /**
+     * Register a payload for one read
+     *
+     * @return content:// URI to hand to the caller
+     */
+    static Uri register(Context context, String mimeType, Producer producer) {
+        byte[] bytes = new byte[16];
+        sRandom.nextBytes(bytes);
+        StringBuilder token = new StringBuilder(32);
+        for (byte b : bytes) {
+            token.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        long now = SystemClock.elapsedRealtime();
+        synchronized (sTransfers) {
+            // Drop transfers nobody picked up
+            Iterator<Transfer> it = sTransfers.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().mExpiresAt < now) {
+                    it.remove();
+                }
+            }
+            sTransfers.put(token.toString(), new Transfer(mimeType, producer, now + TTL_MS));
+        }
+        return new Uri.Builder()
+                .scheme("content")
+                .authority(context.getPackageName() + AUTHORITY_SUFFIX)
+                .appendPath(token.toString())
+                .build();
+    }
+
+    private static Transfer peek(Uri uri) {
+        synchronized (sTransfers) {
+            Transfer transfer = sTransfers.get(uri.getLastPathSegment());
+            return transfer != null && transfer.mExpiresAt >= SystemClock.elapsedRealtime() ? transfer : null;
+        }
+    }
+
+    private static Transfer take(Uri uri) {
+        synchronized (sTransfers) {
+            Transfer transfer = sTransfers.remove(uri.getLastPathSegment());
+            return transfer != null && transfer.mExpiresAt >= SystemClock.elapsedRealtime() ? transfer : null;
+        }
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        if (!"r".equals(mode)) {
+            throw new FileNotFoundException("Transfers are read-only");
+        }
+        Transfer transfer = take(uri);
+        if (transfer == null) {
+            throw new FileNotFoundException("Unknown or expired transfer: " + uri);
+        }
+        ParcelFileDescriptor[] pipe;
+        try {
+            // Reliable pipe, so the reader sees a failed producer as an error instead of a short payload
+            pipe = ParcelFileDescriptor.createReliablePipe();
+        } catch (IOException e) {
+            throw new FileNotFoundException(e.getMessage());
+        }
+        ParcelFileDescriptor writeSide = pipe[1];
+        sProducers.execute(() -> {
+            try {
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(writeSide.getFileDescriptor()));
+                transfer.mProducer.writeTo(out);
+                out.flush();
+                writeSide.close();
+            } catch (IOException | RuntimeException e) {
+                // A codec or store error must reach the reader too, not leave it on an open pipe
+                Log.e("MCPDemo", "Transfer failed: " + uri, e);
+                try {
+                    writeSide.closeWithError(String.valueOf(e.getMessage()));
+                } catch (IOException ignored) {
+                    // The reader is gone
+                }
+            }
+        });
+        return pipe[0];
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        Transfer transfer = peek(uri);
+        return transfer != null ? transfer.mMimeType : null;
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        return null;
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        return 0;
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        return 0;
+    }
+}
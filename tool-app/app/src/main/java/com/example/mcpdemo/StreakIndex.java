@@ -0,0 +1,167 @@
+package com.example.mcpdemo;
+
+/**
+ * Streak index: clocked-in days kept as sorted, non-overlapping runs of consecutive epoch days.
+ * <p>
+ * Adding a day extends, joins or inserts a run, so a make-up that fills a gap merges the two runs
+ * around it. Lookups are a binary search over run starts; the longest run is tracked on write.
+ */
+final class StreakIndex {
+
+    private int[] mStarts = new int[16];
+    // Inclusive run ends
+    private int[] mEnds = new int[16];
+    private int mSize;
+    private int mLongest;
+
+    /**
+     * Add a clocked-in day
+     *
+     * @return true if the day was not in the index before
+     */
+    boolean add(int day) {
+        int i = floor(day);
+        if (i >= 0 && day <= mEnds[i]) {
+            return false;
+        }
+        boolean joinsLeft = i >= 0 && mEnds[i] == day - 1;
+        boolean joinsRight = i + 1 < mSize && mStarts[i + 1] == day + 1;
+        int run;
+        if (joinsLeft && joinsRight) {
+            mEnds[i] = mEnds[i + 1];
+            remove(i + 1);
+            run = i;
+        } else if (joinsLeft) {
+            mEnds[i] = day;
+            run = i;
+        } else if (joinsRight) {
+            mStarts[i + 1] = day;
+            run = i + 1;
+        } else {
+            insert(i + 1, day);
+            run = i + 1;
+        }
+        mLongest = Math.max(mLongest, length(run));
+        return true;
+    }
+
+    /**
+     * Find the run containing a day
+     *
+     * @return Run index, or -1 if the day is not clocked in
+     */
+    int find(int day) {
+        int i = floor(day);
+        return i >= 0 && day <= mEnds[i] ? i : -1;
+    }
+
+    /**
+     * Number of consecutive days up to and including {@code day}, 0 if {@code day} is not clocked in
+     */
+    int streakEndingAt(int day) {
+        int i = find(day);
+        return i < 0 ? 0 : day - mStarts[i] + 1;
+    }
+
+    /**
+     * Length of the longest run
+     */
+    int longest() {
+        return mLongest;
+    }
+
+    /**
+     * Length of the longest run within a range, runs crossing the range bounds are clipped
+     *
+     * @param from First day (inclusive)
+     * @param to   Last day (inclusive)
+     */
+    int longestWithin(int from, int to) {
+        int i = Math.max(floor(from), 0);
+        int longest = 0;
+        for (; i < mSize && mStarts[i] <= to; i++) {
+            int start = Math.max(mStarts[i], from);
+            int end = Math.min(mEnds[i], to);
+            if (end >= start) {
+                longest = Math.max(longest, end - start + 1);
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * Number of runs
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * First day of a run
+     */
+    int start(int run) {
+        return mStarts[run];
+    }
+
+    /**
+     * Last day (inclusive) of a run
+     */
+    int end(int run) {
+        return mEnds[run];
+    }
+
+    /**
+     * Number of days in a run
+     */
+    int length(int run) {
+        return mEnds[run] - mStarts[run] + 1;
+    }
+
+    void clear() {
+        mSize = 0;
+        mLongest = 0;
+    }
+
+    /**
+     * Index of the last run starting on or before {@code day}, -1 if none
+     */
+    private int floor(int day) {
+        // Days usually arrive in order, check the last run first
+        if (mSize > 0 && mStarts[mSize - 1] <= day) {
+            return mSize - 1;
+        }
+        int low = 0;
+        int high = mSize - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (mStarts[mid] <= day) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    private void insert(int index, int day) {
+        if (mSize == mStarts.length) {
+            int[] starts = new int[mSize * 2];
+            int[] ends = new int[mSize * 2];
+            System.arraycopy(mStarts, 0, starts, 0, mSize);
+            System.arraycopy(mEnds, 0, ends, 0, mSize);
+            mStarts = starts;
+            mEnds = ends;
+        }
+        System.arraycopy(mStarts, index, mStarts, index + 1, mSize - index);
+        System.arraycopy(mEnds, index, mEnds, index + 1, mSize - index);
+        mStarts[index] = day;
+        mEnds[index] = day;
+        mSize++;
+    }
+
+    private void remove(int index) {
+        System.arraycopy(mStarts, index + 1, mStarts, index, mSize - index - 1);
+        System.arraycopy(mEnds, index + 1, mEnds, index, mSize - index - 1);
+        mSize--;
+    }
+}
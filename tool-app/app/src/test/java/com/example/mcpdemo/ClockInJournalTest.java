@@ -0,0 +1,153 @@
+package com.example.mcpdemo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.Assert.*;
+
+/**
+ * Crash-recovery tests for the clock-in journal: a crash is simulated by cutting the files at arbitrary offsets
+ */
+public class ClockInJournalTest {
+
+    private static final int FIRST_DAY = EpochDays.parse("2025-01-01");
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void truncatedLog_recoversEveryCompleteRecord() throws Exception {
+        File source = tmp.newFolder();
+        ClockInStore store = ClockInStore.open(source, Integer.MAX_VALUE);
+        int records = 20;
+        for (int i = 0; i < records; i++) {
+            // Every other day, so each record is visible on its own
+            store.set(FIRST_DAY + 2 * i, ClockInJournal.TYPE_MAKE_UP);
+        }
+        store.close();
+        long length = new File(source, ClockInJournal.FILE_NAME).length();
+        assertEquals(ClockInJournal.HEADER_SIZE + records * ClockInJournal.RECORD_SIZE, length);
+
+        for (long cut = 0; cut <= length; cut++) {
+            File dir = copy(source);
+            truncate(new File(dir, ClockInJournal.FILE_NAME), cut);
+
+            ClockInStore recovered = ClockInStore.open(dir, Integer.MAX_VALUE);
+            long complete = Math.max(0, (cut - ClockInJournal.HEADER_SIZE) / ClockInJournal.RECORD_SIZE);
+            for (int i = 0; i < records; i++) {
+                assertEquals("cut at " + cut + ", record " + i, i < complete, recovered.get(FIRST_DAY + 2 * i));
+            }
+
+            // Appends after recovery land right after the last good record
+            recovered.set(FIRST_DAY - 1, ClockInJournal.TYPE_MAKE_UP);
+            recovered.close();
+            ClockInStore reopened = ClockInStore.open(dir, Integer.MAX_VALUE);
+            assertTrue("cut at " + cut, reopened.get(FIRST_DAY - 1));
+            for (int i = 0; i < records; i++) {
+                assertEquals("cut at " + cut + ", record " + i, i < complete, reopened.get(FIRST_DAY + 2 * i));
+            }
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void corruptRecord_stopsReplay() throws Exception {
+        File dir = tmp.newFolder();
+        ClockInStore store = ClockInStore.open(dir, Integer.MAX_VALUE);
+        for (int i = 0; i < 5; i++) {
+            store.set(FIRST_DAY + i, ClockInJournal.TYPE_MAKE_UP);
+        }
+        store.close();
+
+        // Flip a bit in the day of the fourth record
+        try (RandomAccessFile file = new RandomAccessFile(new File(dir, ClockInJournal.FILE_NAME), "rw")) {
+            long position = ClockInJournal.HEADER_SIZE + 3L * ClockInJournal.RECORD_SIZE + 4;
+            file.seek(position);
+            int day = file.readInt();
+            file.seek(position);
+            file.writeInt(day ^ 1);
+        }
+
+        ClockInStore recovered = ClockInStore.open(dir, Integer.MAX_VALUE);
+        assertEquals(3, recovered.streakEndingAt(FIRST_DAY + 2));
+        assertFalse(recovered.get(FIRST_DAY + 3));
+        assertFalse(recovered.get(FIRST_DAY + 4));
+    }
+
+    @Test
+    public void crashDuringCompaction_neverLosesOrResurrectsDays() throws Exception {
+        File dir = tmp.newFolder();
+        ClockInStore store = ClockInStore.open(dir, 4);
+        for (int i = 0; i < 3; i++) {
+            store.set(FIRST_DAY + i, ClockInJournal.TYPE_MAKE_UP);
+        }
+        store.close();
+        File log = new File(dir, ClockInJournal.FILE_NAME);
+        byte[] staleLog = Files.readAllBytes(log.toPath());
+
+        // The fourth record triggers compaction into a new snapshot generation
+        store = ClockInStore.open(dir, 4);
+        store.set(FIRST_DAY + 3, ClockInJournal.TYPE_MAKE_UP);
+        store.clear();
+        store.close();
+
+        // Crash after the empty snapshot was written but before the log was reset
+        Files.write(log.toPath(), staleLog);
+        ClockInStore recovered = ClockInStore.open(dir, 4);
+        for (int i = 0; i < 4; i++) {
+            assertFalse(recovered.get(FIRST_DAY + i));
+        }
+    }
+
+    @Test
+    public void awaitedRecords_surviveProcessDeath() throws Exception {
+        File dir = tmp.newFolder();
+        ClockInStore store = ClockInStore.open(dir);
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            int offset = t;
+            writers[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 25; i++) {
+                        store.set(FIRST_DAY + offset + 4 * i, ClockInJournal.TYPE_MAKE_UP);
+                        store.await(i % 2 == 0 ? ClockInDurability.WRITTEN : ClockInDurability.FSYNCED);
+                    }
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        // Copy the files without closing the store, as if the process had been killed
+        File dir2 = copy(dir);
+        store.close();
+        long length = new File(dir2, ClockInJournal.FILE_NAME).length();
+        assertEquals(ClockInJournal.HEADER_SIZE + 100 * ClockInJournal.RECORD_SIZE, length);
+        ClockInStore recovered = ClockInStore.open(dir2);
+        assertEquals(100, recovered.count(FIRST_DAY, FIRST_DAY + 99));
+    }
+
+    private File copy(File source) throws Exception {
+        File dir = tmp.newFolder();
+        for (File file : source.listFiles()) {
+            Files.copy(file.toPath(), new File(dir, file.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return dir;
+    }
+
+    private static void truncate(File file, long length) throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.mcpdemo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Multithreaded stress tests for the clock-in store: concurrent writers and lock-free readers
+ */
+public class ClockInStoreConcurrencyTest {
+
+    private static final int MAKE_UP = ClockInJournal.TYPE_MAKE_UP;
+    private static final int THREADS = 8;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void concurrentWriters_loseNoUpdates() throws Exception {
+        File dir = tmp.newFolder();
+        // Small threshold so compactions run while other threads are writing
+        ClockInStore store = ClockInStore.open(dir, 64);
+        int from = EpochDays.parse("2021-01-01");
+        int days = 4 * 365;
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            boolean batch = t % 2 == 0;
+            results.add(pool.submit(() -> {
+                // Every thread writes every day, in its own order, so each day is contended
+                int[] order = shuffledDays(from, days, new Random(seed));
+                start.await();
+                int added = 0;
+                if (batch) {
+                    for (int i = 0; i < order.length; i += 16) {
+                        int[] chunk = new int[Math.min(16, order.length - i)];
+                        System.arraycopy(order, i, chunk, 0, chunk.length);
+                        added += store.setAll(chunk, MAKE_UP).length;
+                    }
+                } else {
+                    for (int day : order) {
+                        if (store.set(day, MAKE_UP)) {
+                            added++;
+                        }
+                    }
+                }
+                return added;
+            }));
+        }
+        start.countDown();
+        int added = 0;
+        for (Future<Integer> result : results) {
+            added += result.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // Each day was claimed by exactly one writer
+        assertEquals(days, added);
+        assertEquals(days, store.count(from, from + days - 1));
+        assertEquals(days, store.streakEndingAt(from + days - 1));
+        assertEquals(days, store.longestStreak());
+        int yearTotal = 0;
+        for (int year = 2021; year <= 2024; year++) {
+            yearTotal += store.yearCount(year);
+        }
+        assertEquals(days, yearTotal);
+        store.close();
+
+        ClockInStore reopened = ClockInStore.open(dir, 64);
+        for (int day = from; day < from + days; day++) {
+            assertTrue(reopened.get(day));
+        }
+        assertEquals(days, reopened.count(from - 30, from + days + 30));
+        assertEquals(days, reopened.longestStreak());
+    }
+
+    @Test
+    public void readersDuringWrites_neverSeeTornStreaks() throws Exception {
+        ClockInStore store = ClockInStore.open(tmp.newFolder());
+        int from = EpochDays.parse("2022-06-01");
+        int days = 3000;
+        int last = from + days - 1;
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> readers = new ArrayList<>();
+        for (int t = 0; t < THREADS / 2; t++) {
+            readers.add(pool.submit((Callable<Void>) () -> {
+                int previousLongest = 0;
+                while (!done.get()) {
+                    int streak = store.streakEndingAt(last);
+                    int longest = store.longestStreak();
+                    int longestWithin = store.longestStreak(from, last);
+                    int count = store.count(from, last);
+                    // Only additions happen, so every value only grows and stays within bounds
+                    assertTrue(streak >= 0 && streak <= days);
+                    assertTrue(longest >= streak && longest <= days);
+                    assertTrue(longest >= previousLongest);
+                    assertTrue(longestWithin <= days);
+                    assertTrue(count <= days);
+                    previousLongest = longest;
+                }
+                return null;
+            }));
+        }
+        // Two writers fill the range from both ends, merging runs in the middle
+        Future<?> ascending = pool.submit((Callable<Void>) () -> {
+            for (int day = from; day <= last; day += 2) {
+                store.set(day, MAKE_UP);
+            }
+            return null;
+        });
+        Future<?> descending = pool.submit((Callable<Void>) () -> {
+            for (int day = last; day >= from; day -= 1) {
+                store.set(day, MAKE_UP);
+            }
+            return null;
+        });
+        ascending.get(30, TimeUnit.SECONDS);
+        descending.get(30, TimeUnit.SECONDS);
+        done.set(true);
+        for (Future<?> reader : readers) {
+            reader.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(days, store.streakEndingAt(last));
+        assertEquals(days, store.longestStreak());
+        assertEquals(days, store.count(from, last));
+    }
+
+    private static int[] shuffledDays(int from, int days, Random random) {
+        int[] order = new int[days];
+        for (int i = 0; i < days; i++) {
+            order[i] = from + i;
+        }
+        for (int i = days - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int day = order[i];
+            order[i] = order[j];
+            order[j] = day;
+        }
+        return order;
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.mcpdemo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the bitmap-backed clock-in store
+ */
+public class ClockInStoreTest {
+
+    private static final int MAKE_UP = ClockInJournal.TYPE_MAKE_UP;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void set_isPersistedAcrossReopen() throws Exception {
+        File dir = tmp.newFolder();
+        ClockInStore store = ClockInStore.open(dir);
+        int leapDay = EpochDays.parse("2024-02-29");
+        int newYearsEve = EpochDays.parse("2024-12-31");
+        int earlier = EpochDays.parse("2019-07-01");
+
+        assertTrue(store.set(leapDay, MAKE_UP));
+        assertFalse(store.set(leapDay, MAKE_UP));
+        assertTrue(store.set(newYearsEve, MAKE_UP));
+        assertTrue(store.set(earlier, MAKE_UP));
+        store.close();
+
+        ClockInStore reopened = ClockInStore.open(dir);
+        assertTrue(reopened.get(leapDay));
+        assertTrue(reopened.get(newYearsEve));
+        assertTrue(reopened.get(earlier));
+        assertFalse(reopened.get(leapDay + 1));
+        assertFalse(reopened.get(EpochDays.parse("2030-01-01")));
+    }
+
+    @Test
+    public void compaction_keepsAllDaysAndResetsJournal() throws Exception {
+        File dir = tmp.newFolder();
+        ClockInStore store = ClockInStore.open(dir, 8);
+        int first = EpochDays.parse("2023-12-20");
+        for (int day = first; day < first + 30; day++) {
+            store.set(day, MAKE_UP);
+        }
+        store.close();
+
+        File log = new File(dir, ClockInJournal.FILE_NAME);
+        assertEquals(ClockInJournal.HEADER_SIZE + 6 * ClockInJournal.RECORD_SIZE, log.length());
+        ClockInStore reopened = ClockInStore.open(dir, 8);
+        for (int day = first; day < first + 30; day++) {
+            assertTrue(reopened.get(day));
+        }
+        assertEquals(30, reopened.streakEndingAt(first + 29));
+    }
+
+    @Test
+    public void failedCompaction_keepsTheWriteAndIsRetried() throws Exception {
+        File dir = tmp.newFolder();
+        ClockInStore store = ClockInStore.open(dir, 2);
+        // A directory where the snapshot is written makes compaction fail
+        File blocker = new File(dir, ClockInStore.FILE_NAME + ".tmp");
+        assertTrue(blocker.mkdir());
+        int first = EpochDays.parse("2024-03-01");
+        assertTrue(store.set(first, MAKE_UP));
+        assertTrue(store.set(first + 1, MAKE_UP));
+        assertEquals(2, store.setAll(new int[]{first + 2, first + 3}, MAKE_UP).length);
+        assertTrue(store.get(first + 3));
+
+        assertTrue(blocker.delete());
+        store.set(first + 4, MAKE_UP);
+        store.set(first + 5, MAKE_UP);
+        store.close();
+
+        File log = new File(dir, ClockInJournal.FILE_NAME);
+        assertEquals(ClockInJournal.HEADER_SIZE, log.length());
+        ClockInStore reopened = ClockInStore.open(dir, 2);
+        for (int day = first; day <= first + 5; day++) {
+            assertTrue(reopened.get(day));
+        }
+    }
+
+    @Test
+    public void open_upgradesVersion1Bitmap() throws Exception {
+        File dir = tmp.newFolder();
+        int year = 2025;
+        try (DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(new File(dir, ClockInStore.FILE_NAME)))) {
+            out.writeInt(0x4D434942);
+            out.writeInt(1);
+            out.writeInt(year);
+            // Jan 1st to 3rd
+            out.writeLong(0b111L);
+            for (int i = 1; i < ClockInStore.WORDS_PER_YEAR; i++) {
+                out.writeLong(0);
+            }
+            // Partial slot left by an interrupted append
+            out.writeShort(7);
+        }
+
+        ClockInStore store = ClockInStore.open(dir);
+        assertTrue(store.get(EpochDays.of(year, 1, 3)));
+        assertFalse(store.get(EpochDays.of(year, 1, 4)));
+        assertEquals(3, store.longestStreak());
+        // Old snapshots have no times, the days are still listed
+        assertEquals(3, store.getRecords(EpochDays.of(year, 1, 1), EpochDays.of(year, 12, 31)).size);
+        assertEquals(ClockInTimeIndex.UNKNOWN_TIME, store.clockInTime(EpochDays.of(year, 1, 1)));
+        store.close();
+        assertTrue(ClockInStore.open(dir).get(EpochDays.of(year, 1, 1)));
+    }
+
+    @Test
+    public void setAll_skipsDuplicatesAndSpansYears() throws Exception {
+        File dir = tmp.newFolder();
+        ClockInStore store = ClockInStore.open(dir);
+        int newYearsEve = EpochDays.parse("2024-12-31");
+        store.set(newYearsEve, MAKE_UP);
+
+        int[] added = store.setAll(new int[]{newYearsEve - 1, newYearsEve, newYearsEve + 1, newYearsEve + 1}, MAKE_UP);
+        assertArrayEquals(new int[]{newYearsEve - 1, newYearsEve + 1}, added);
+        assertEquals(3, store.streakEndingAt(newYearsEve + 1));
+        store.close();
+
+        long[] bits = ClockInStore.open(dir).getRange(newYearsEve - 2, newYearsEve + 70);
+        assertEquals(2, bits.length);
+        assertEquals(0b1110L, bits[0]);
+        assertEquals(0, bits[1]);
+    }
+
+    @Test
+    public void getMonthMask_matchesSingleDayLookups() throws Exception {
+        ClockInStore store = ClockInStore.open(tmp.newFolder());
+        java.util.Random random = new java.util.Random(7);
+        int first = EpochDays.parse("2023-01-01");
+        int last = EpochDays.parse("2024-12-31");
+        for (int i = 0; i < 300; i++) {
+            store.set(first + random.nextInt(last - first + 1), MAKE_UP);
+        }
+        for (int year = 2023; year <= 2024; year++) {
+            for (int month = 1; month <= 12; month++) {
+                int mask = store.getMonthMask(year, month);
+                int length = EpochDays.lengthOfMonth(year, month);
+                assertEquals(0, mask >>> length);
+                for (int day = 1; day <= length; day++) {
+                    assertEquals(store.get(EpochDays.of(year, month, day)), (mask & (1 << (day - 1))) != 0);
+                }
+            }
+        }
+        assertEquals(0, store.getMonthMask(2022, 12));
+    }
+
+    @Test
+    public void aggregates_matchBitmap() throws Exception {
+        File dir = tmp.newFolder();
+        ClockInStore store = ClockInStore.open(dir);
+        java.util.Random random = new java.util.Random(11);
+        int first = EpochDays.parse("2023-11-01");
+        int last = EpochDays.parse("2025-02-28");
+        for (int i = 0; i < 250; i++) {
+            store.set(first + random.nextInt(last - first + 1), MAKE_UP);
+        }
+        store.close();
+        store = ClockInStore.open(dir);
+        store.setAll(new int[]{first + 3, first + 4, first + 5}, MAKE_UP);
+
+        for (int i = 0; i < 200; i++) {
+            int from = first + random.nextInt(last - first + 1);
+            int to = from + random.nextInt(last - from + 1);
+            int count = 0;
+            int longest = 0;
+            int run = 0;
+            for (int day = from; day <= to; day++) {
+                boolean set = store.get(day);
+                count += set ? 1 : 0;
+                run = set ? run + 1 : 0;
+                longest = Math.max(longest, run);
+            }
+            assertEquals(count, store.count(from, to));
+            assertEquals(longest, store.longestStreak(from, to));
+        }
+        assertEquals(store.count(EpochDays.parse("2024-01-01"), EpochDays.parse("2024-12-31")), store.yearCount(2024));
+        assertEquals(Integer.bitCount(store.getMonthMask(2024, 2)), store.monthCount(2024, 2));
+        assertEquals(0, store.yearCount(2022));
+    }
+
+    @Test
+    public void times_surviveCompactionAndReopen() throws Exception {
+        File dir = tmp.newFolder();
+        ClockInStore store = ClockInStore.open(dir, 4);
+        int first = EpochDays.parse("2025-05-01");
+        long before = System.currentTimeMillis();
+        store.set(first + 9, ClockInJournal.TYPE_CLOCK_IN);
+        for (int i = 0; i < 6; i++) {
+            store.set(first + i, MAKE_UP);
+        }
+        long after = System.currentTimeMillis();
+        store.close();
+
+        // Some records come from the snapshot, the rest from the journal
+        ClockInStore reopened = ClockInStore.open(dir, 4);
+        ClockInRecords records = reopened.getRecords(first, first + 30);
+        assertEquals(7, records.size);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(first + i, records.epochDays[i]);
+            assertEquals(MAKE_UP, records.types[i]);
+        }
+        assertEquals(first + 9, records.epochDays[6]);
+        assertEquals(ClockInJournal.TYPE_CLOCK_IN, records.types[6]);
+        long time = reopened.clockInTime(first + 9);
+        assertTrue(time >= before && time <= after);
+        assertEquals(ClockInTimeIndex.UNKNOWN_TIME, reopened.clockInTime(first + 8));
+    }
+
+    @Test
+    public void importUntimed_keepsTimeAndTypeUnknown() throws Exception {
+        File dir = tmp.newFolder();
+        ClockInStore store = ClockInStore.open(dir);
+        int first = EpochDays.parse("2023-12-30");
+        store.set(first, MAKE_UP);
+        long recorded = store.clockInTime(first);
+        // Already clocked-in days and duplicates are not counted again
+        assertEquals(3, store.importUntimed(new int[]{first, first + 1, first + 3, first + 3, first + 5}));
+        store.close();
+
+        ClockInStore reopened = ClockInStore.open(dir);
+        ClockInRecords records = reopened.getRecords(first, first + 5);
+        assertEquals(4, records.size);
+        assertEquals(MAKE_UP, records.types[0]);
+        assertEquals(recorded, reopened.clockInTime(first));
+        for (int i = 1; i < 4; i++) {
+            assertEquals(ClockInTimeIndex.UNKNOWN_TYPE, records.types[i]);
+            assertEquals(ClockInTimeIndex.UNKNOWN_TIME, records.timesMillis[i]);
+        }
+        assertEquals(ClockInTimeIndex.UNKNOWN_TIME, reopened.clockInTime(first + 5));
+        assertEquals(2, reopened.yearCount(2024));
+    }
+
+    @Test
+    public void clear_removesEverything() throws Exception {
+        File dir = tmp.newFolder();
+        ClockInStore store = ClockInStore.open(dir);
+        int day = EpochDays.parse("2025-03-10");
+        store.set(day, MAKE_UP);
+        store.clear();
+        store.close();
+
+        assertFalse(store.get(day));
+        assertFalse(ClockInStore.open(dir).get(day));
+    }
+}
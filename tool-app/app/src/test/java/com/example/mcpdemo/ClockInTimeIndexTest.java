@@ -0,0 +1,57 @@
+package com.example.mcpdemo;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the sorted clock-in time index
+ */
+public class ClockInTimeIndexTest {
+
+    private static final int CLOCK_IN = ClockInJournal.TYPE_CLOCK_IN;
+    private static final int MAKE_UP = ClockInJournal.TYPE_MAKE_UP;
+
+    @Test
+    public void range_matchesLinearScan() {
+        ClockInTimeIndex index = new ClockInTimeIndex();
+        Random random = new Random(3);
+        boolean[] set = new boolean[1000];
+        for (int i = 0; i < 600; i++) {
+            int day = random.nextInt(set.length);
+            assertEquals(!set[day], index.add(day, MAKE_UP, day * 1000L));
+            set[day] = true;
+        }
+        for (int i = 0; i < 200; i++) {
+            int from = random.nextInt(set.length);
+            int to = from + random.nextInt(set.length - from);
+            ClockInRecords records = index.range(from, to);
+            int expected = 0;
+            for (int day = from; day <= to; day++) {
+                if (set[day]) {
+                    assertEquals(day, records.epochDays[expected]);
+                    assertEquals(day * 1000L, records.timesMillis[expected]);
+                    expected++;
+                }
+            }
+            assertEquals(expected, records.size);
+        }
+        assertEquals(0, index.range(2000, 3000).size);
+    }
+
+    @Test
+    public void add_keepsFirstRecordButFillsUnknownTime() {
+        ClockInTimeIndex index = new ClockInTimeIndex();
+        assertTrue(index.add(10, CLOCK_IN, 5000));
+        assertFalse(index.add(10, MAKE_UP, 9000));
+        assertEquals(5000, index.time(10));
+
+        assertTrue(index.add(11, ClockInTimeIndex.UNKNOWN_TYPE, ClockInTimeIndex.UNKNOWN_TIME));
+        assertFalse(index.add(11, MAKE_UP, 7000));
+        assertEquals(7000, index.time(11));
+        assertEquals(MAKE_UP, index.range(11, 11).types[0]);
+        assertEquals(ClockInTimeIndex.UNKNOWN_TIME, index.time(12));
+    }
+}
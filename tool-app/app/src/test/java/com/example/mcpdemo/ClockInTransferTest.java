@@ -0,0 +1,133 @@
+package com.example.mcpdemo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the clock-in import/export codecs
+ */
+public class ClockInTransferTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void ndjson_writesRunsAcrossNewYear() throws Exception {
+        ClockInStore store = ClockInStore.open(tmp.newFolder());
+        int newYearsEve = EpochDays.parse("2023-12-30");
+        for (int day = newYearsEve; day < newYearsEve + 4; day++) {
+            store.set(day, ClockInJournal.TYPE_MAKE_UP);
+        }
+        store.set(EpochDays.parse("2024-02-29"), ClockInJournal.TYPE_MAKE_UP);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(5, export(ClockInTransfer.FORMAT_NDJSON, store, out));
+        assertEquals("{\"start\":\"2023-12-30\",\"end\":\"2024-01-02\"}\n{\"date\":\"2024-02-29\"}\n",
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void roundTrip_restoresEveryDay() throws Exception {
+        ClockInStore source = ClockInStore.open(tmp.newFolder());
+        int first = EpochDays.parse("2016-01-01");
+        // Every third day over ten years, plus a long streak
+        for (int day = first; day < first + 3653; day += 3) {
+            source.set(day, ClockInJournal.TYPE_MAKE_UP);
+        }
+        for (int day = first + 1000; day < first + 1100; day++) {
+            source.set(day, ClockInJournal.TYPE_MAKE_UP);
+        }
+
+        for (String format : new String[]{ClockInTransfer.FORMAT_NDJSON, ClockInTransfer.FORMAT_BITMAP}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int exported = export(format, source, out);
+            ClockInStore target = ClockInStore.open(tmp.newFolder());
+            int read = ClockInTransfer.read(format, new ByteArrayInputStream(out.toByteArray()),
+                    (epochDays, count) -> target.setAll(Arrays.copyOf(epochDays, count), ClockInJournal.TYPE_MAKE_UP));
+            assertEquals(format, exported, read);
+            assertArrayEquals(format, source.getRange(first, first + 3652), target.getRange(first, first + 3652));
+            assertEquals(format, source.longestStreak(), target.longestStreak());
+        }
+    }
+
+    @Test
+    public void ndjson_rejectsMalformedLines() {
+        assertRejected("{\"date\":\"2024-02-30\"}\n");
+        assertRejected("{\"start\":\"2024-03-02\",\"end\":\"2024-03-01\"}\n");
+        assertRejected("{\"day\":\"2024-03-01\"}\n");
+        assertRejected("not json\n");
+    }
+
+    @Test
+    public void ndjson_acceptsBlankLinesAndSpacing() throws Exception {
+        String input = "\n{ \"date\" : \"2024-03-01\" }\n\n{\"end\":\"2024-03-05\", \"start\":\"2024-03-03\"}";
+        int[] days = new int[8];
+        int[] count = new int[1];
+        int read = ClockInTransfer.read(ClockInTransfer.FORMAT_NDJSON,
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+                (epochDays, n) -> {
+                    System.arraycopy(epochDays, 0, days, count[0], n);
+                    count[0] += n;
+                });
+        assertEquals(4, read);
+        int march1 = EpochDays.parse("2024-03-01");
+        assertArrayEquals(new int[]{march1, march1 + 2, march1 + 3, march1 + 4}, Arrays.copyOf(days, count[0]));
+    }
+
+    @Test
+    public void ndjson_readsEscapedAndReorderedFields() throws Exception {
+        // Escaped date characters, a key inside a string value, and extra fields in any order
+        String input = "{\"note\":\"\\\"date\\\": \\\"1999-01-01\\\"\",\"date\":\"2024\\u002d03\\u002d01\"}\n"
+                + "{\"end\" :\t\"2024-03-04\", \"source\":\"end\", \"start\":\"2024-03-03\"}\n";
+        int[] days = new int[8];
+        int[] count = new int[1];
+        int read = ClockInTransfer.read(ClockInTransfer.FORMAT_NDJSON,
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+                (epochDays, n) -> {
+                    System.arraycopy(epochDays, 0, days, count[0], n);
+                    count[0] += n;
+                });
+        assertEquals(3, read);
+        int march1 = EpochDays.parse("2024-03-01");
+        assertArrayEquals(new int[]{march1, march1 + 2, march1 + 3}, Arrays.copyOf(days, count[0]));
+    }
+
+    @Test
+    public void ndjson_rejectsOversizedRangeBeforeExpandingIt() {
+        String input = "{\"start\":\"1900-01-01\",\"end\":\"2024-12-31\"}\n";
+        int[] calls = new int[1];
+        try {
+            ClockInTransfer.read(ClockInTransfer.FORMAT_NDJSON,
+                    new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), (epochDays, count) -> calls[0]++);
+            fail("Accepted an oversized range");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains(String.valueOf(ClockInTransfer.MAX_IMPORT_DAYS)));
+        }
+        assertEquals(0, calls[0]);
+    }
+
+    private static int export(String format, ClockInStore store, ByteArrayOutputStream out) throws IOException {
+        return ClockInTransfer.export(format, store.years(),
+                year -> store.getRange(EpochDays.of(year, 1, 1), EpochDays.of(year + 1, 1, 1) - 1), out);
+    }
+
+    private static void assertRejected(String input) {
+        try {
+            ClockInTransfer.read(ClockInTransfer.FORMAT_NDJSON,
+                    new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), (epochDays, count) -> {
+                    });
+            fail("Accepted " + input);
+        } catch (IOException expected) {
+            // Expected
+        }
+    }
+}
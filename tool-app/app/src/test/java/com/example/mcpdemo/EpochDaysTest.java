@@ -0,0 +1,65 @@
+package com.example.mcpdemo;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the epoch-day date helpers
+ */
+public class EpochDaysTest {
+
+    @Test
+    public void roundTrip_matchesGregorianCalendar() {
+        GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        calendar.setGregorianChange(new java.util.Date(Long.MIN_VALUE));
+        char[] chars = new char[10];
+        for (int day = EpochDays.of(1900, 1, 1); day <= EpochDays.of(2100, 12, 31); day++) {
+            calendar.setTimeInMillis(day * 86_400_000L);
+            int year = calendar.get(Calendar.YEAR);
+            int month = calendar.get(Calendar.MONTH) + 1;
+            int dayOfMonth = calendar.get(Calendar.DAY_OF_MONTH);
+
+            assertEquals(day, EpochDays.of(year, month, dayOfMonth));
+            assertEquals(year, EpochDays.year(day));
+            assertEquals(month, EpochDays.month(day));
+            assertEquals(dayOfMonth, EpochDays.dayOfMonth(day));
+            assertEquals(calendar.get(Calendar.DAY_OF_YEAR) - 1, EpochDays.dayOfYear(day));
+            int isoDayOfWeek = (calendar.get(Calendar.DAY_OF_WEEK) + 5) % 7 + 1;
+            assertEquals(isoDayOfWeek, EpochDays.dayOfWeek(day));
+
+            EpochDays.formatTo(day, chars, 0);
+            assertEquals(day, EpochDays.parse(new String(chars)));
+        }
+    }
+
+    @Test
+    public void format_padsFields() {
+        assertEquals("2024-02-29", EpochDays.format(EpochDays.of(2024, 2, 29)));
+        assertEquals("0999-01-05", EpochDays.format(EpochDays.of(999, 1, 5)));
+        assertEquals("1969-12-31", EpochDays.appendTo(new StringBuilder(), -1).toString());
+    }
+
+    @Test
+    public void isValid_rejectsMalformedDates() {
+        assertTrue(EpochDays.isValid("2024-02-29"));
+        assertFalse(EpochDays.isValid("2023-02-29"));
+        assertFalse(EpochDays.isValid("2024-13-01"));
+        assertFalse(EpochDays.isValid("2024-1-01"));
+        assertFalse(EpochDays.isValid("2024/01/01"));
+        assertFalse(EpochDays.isValid("20a4-01-01"));
+        assertFalse(EpochDays.isValid(null));
+    }
+
+    @Test
+    public void ofMillis_appliesZoneOffset() {
+        TimeZone tokyo = TimeZone.getTimeZone("Asia/Tokyo");
+        // 1970-01-01T20:00Z is already Jan 2nd in Tokyo
+        assertEquals(1, EpochDays.ofMillis(20 * 3_600_000L, tokyo));
+        assertEquals(-1, EpochDays.ofMillis(-1, TimeZone.getTimeZone("UTC")));
+    }
+}
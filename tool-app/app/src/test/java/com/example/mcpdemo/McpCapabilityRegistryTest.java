@@ -0,0 +1,159 @@
+package com.example.mcpdemo;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the capability descriptor and the validators compiled from it
+ */
+public class McpCapabilityRegistryTest {
+
+    private static final String DESCRIPTOR = "<mobile-mcp-capabilities rate_limit_burst=\"4\">"
+            + "<capability id=\"query\" read_only=\"true\" streaming=\"true\">"
+            + "<input>"
+            + "<param name=\"start_date\" type=\"string\" format=\"date\" required=\"true\"/>"
+            + "<param name=\"order\" type=\"string\" values=\"desc|asc\"/>"
+            + "<param name=\"limit\" type=\"integer\"/>"
+            + "<param name=\"ratio\" type=\"number\"/>"
+            + "</input>"
+            + "</capability>"
+            + "<capability id=\"make_up\" cost=\"3\" max_concurrency=\"2\">"
+            + "<input>"
+            + "<param name=\"dates\" type=\"array\" format=\"date\" max_items=\"2\" required=\"true\"/>"
+            + "<param name=\"source\" type=\"string\" format=\"content_uri\"/>"
+            + "</input>"
+            + "</capability>"
+            + "<capability id=\"unbound\"/>"
+            + "</mobile-mcp-capabilities>";
+
+    private static McpCapabilityRegistry load(String xml) throws Exception {
+        KXmlParser parser = new KXmlParser();
+        parser.setInput(new StringReader(xml));
+        return McpCapabilityRegistry.load(parser);
+    }
+
+    private static McpCapabilityRegistry bound() throws Exception {
+        McpCapabilityRegistry registry = load(DESCRIPTOR);
+        registry.bind("query", (capabilityId, input, out) -> true);
+        registry.bind("make_up", (capabilityId, input, out) -> true);
+        return registry;
+    }
+
+    private static String validate(McpCapabilityRegistry registry, String id, String input) throws Exception {
+        return registry.get(id).validate(new JSONObject(input));
+    }
+
+    private static McpRequest entry(String capabilityId, String input) throws Exception {
+        return new McpRequest(null, capabilityId, new JSONObject(input), null, null, null, false, 0, false);
+    }
+
+    @Test
+    public void load_readsCapabilityAttributes() throws Exception {
+        McpCapabilityRegistry registry = bound();
+        McpCapabilityRegistry.Capability query = registry.get("query");
+        assertEquals(1, query.mCost);
+        assertNull(query.mLimit);
+        assertTrue(query.mReadOnly);
+        assertTrue(query.mStreaming);
+
+        McpCapabilityRegistry.Capability makeUp = registry.get("make_up");
+        assertEquals(3, makeUp.mCost);
+        assertEquals(2, makeUp.mLimit.availablePermits());
+        assertFalse(makeUp.mReadOnly);
+        assertFalse(makeUp.mStreaming);
+    }
+
+    @Test
+    public void load_defaultsRootLimits() throws Exception {
+        McpCapabilityRegistry registry = load(DESCRIPTOR);
+        assertEquals(4, registry.rateBurst());
+        assertEquals(McpCapabilityRegistry.DEFAULT_RATE_PER_SECOND, registry.ratePerSecond());
+        assertEquals(McpCapabilityRegistry.DEFAULT_MAX_INLINE_RESPONSE, registry.maxInlineResponse());
+        assertEquals(McpCapabilityRegistry.DEFAULT_MAX_CONCURRENT_COST, registry.maxConcurrentCost());
+    }
+
+    @Test(expected = XmlPullParserException.class)
+    public void load_rejectsNonPositiveLimit() throws Exception {
+        load("<mobile-mcp-capabilities><capability id=\"x\" max_concurrency=\"0\"/></mobile-mcp-capabilities>");
+    }
+
+    @Test
+    public void get_isNullWithoutHandler() throws Exception {
+        McpCapabilityRegistry registry = bound();
+        assertNull(registry.get("unbound"));
+        assertNull(registry.get("undeclared"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void bind_rejectsUndeclaredCapability() throws Exception {
+        load(DESCRIPTOR).bind("undeclared", (capabilityId, input, out) -> true);
+    }
+
+    @Test
+    public void validate_checksRequiredAndTypes() throws Exception {
+        McpCapabilityRegistry registry = bound();
+        assertNull(validate(registry, "query", "{\"start_date\":\"2024-01-31\",\"limit\":3,\"ratio\":0.5,\"extra\":1}"));
+        assertEquals("Missing required input start_date.", validate(registry, "query", "{}"));
+        assertEquals("Missing required input start_date.", validate(registry, "query", "{\"start_date\":null}"));
+        assertEquals("start_date must be a string.", validate(registry, "query", "{\"start_date\":20240131}"));
+        assertEquals("limit must be an integer.",
+                validate(registry, "query", "{\"start_date\":\"2024-01-31\",\"limit\":1.5}"));
+        assertEquals("ratio must be a number.",
+                validate(registry, "query", "{\"start_date\":\"2024-01-31\",\"ratio\":\"1\"}"));
+    }
+
+    @Test
+    public void validate_checksFormatsAndValues() throws Exception {
+        McpCapabilityRegistry registry = bound();
+        assertEquals("Invalid start_date, expected yyyy-MM-dd.",
+                validate(registry, "query", "{\"start_date\":\"2024-02-30\"}"));
+        // Allowed values are listed in descriptor order
+        assertEquals("Invalid order, expected one of desc, asc.",
+                validate(registry, "query", "{\"start_date\":\"2024-01-31\",\"order\":\"up\"}"));
+        assertEquals("source must be a content:// URI.",
+                validate(registry, "make_up", "{\"dates\":[\"2024-01-31\"],\"source\":\"file:///x\"}"));
+    }
+
+    @Test
+    public void validate_checksArrays() throws Exception {
+        McpCapabilityRegistry registry = bound();
+        assertNull(validate(registry, "make_up", "{\"dates\":[\"2024-01-30\",\"2024-01-31\"]}"));
+        assertEquals("dates must be an array.", validate(registry, "make_up", "{\"dates\":\"2024-01-31\"}"));
+        assertEquals("dates must not be empty.", validate(registry, "make_up", "{\"dates\":[]}"));
+        assertEquals("dates must have at most 2 items.",
+                validate(registry, "make_up", "{\"dates\":[\"2024-01-29\",\"2024-01-30\",\"2024-01-31\"]}"));
+        assertEquals("Invalid dates[1], expected yyyy-MM-dd.",
+                validate(registry, "make_up", "{\"dates\":[\"2024-01-31\",\"31/01/2024\"]}"));
+        assertEquals("dates[0] must be a string.", validate(registry, "make_up", "{\"dates\":[1]}"));
+    }
+
+    @Test
+    public void validateBatch_acceptsValidEntries() throws Exception {
+        assertNull(bound().validateBatch(Arrays.asList(
+                entry("query", "{\"start_date\":\"2024-01-31\"}"),
+                entry("make_up", "{\"dates\":[\"2024-01-31\"]}"))));
+        assertNull(bound().validateBatch(Collections.emptyList()));
+    }
+
+    @Test
+    public void validateBatch_namesFirstOffendingEntry() throws Exception {
+        McpCapabilityRegistry registry = bound();
+        McpRequest valid = entry("query", "{\"start_date\":\"2024-01-31\"}");
+        assertEquals("Missing capability in batch entry 1.",
+                registry.validateBatch(Arrays.asList(valid, entry(null, "{}"))));
+        assertEquals("Unknown capability ID in batch entry 1: unbound",
+                registry.validateBatch(Arrays.asList(valid, entry("unbound", "{}"))));
+        assertEquals("Batch entry 2: Missing required input dates.",
+                registry.validateBatch(Arrays.asList(valid, valid, entry("make_up", "{}"), entry(null, "{}"))));
+        assertEquals("Batch entry 0: Input must be an object.", registry.validateBatch(Collections.singletonList(
+                new McpRequest(null, "query", new JSONObject(), "Input must be an object.", null, null, false, 0, false))));
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.mcpdemo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the streaming response writer
+ */
+public class McpJsonWriterTest {
+
+    @Test
+    public void nestedContainers_getSeparators() {
+        McpJsonWriter out = new McpJsonWriter(4);
+        out.beginObject()
+                .name("id").value("r1")
+                .name("capability").beginObject()
+                .name("output").beginObject()
+                .name("empty").beginArray().endArray()
+                .name("dates").beginArray().value("2024-01-01").value("2024-01-02").endArray()
+                .name("rows").beginArray()
+                .beginObject().name("n").value(1).endObject()
+                .beginObject().name("n").value(2).endObject()
+                .endArray()
+                .endObject()
+                .endObject()
+                .name("ok").value(true)
+                .endObject();
+        assertEquals("{\"id\":\"r1\",\"capability\":{\"output\":{\"empty\":[],\"dates\":[\"2024-01-01\",\"2024-01-02\"],"
+                + "\"rows\":[{\"n\":1},{\"n\":2}]}},\"ok\":true}", out.toString());
+    }
+
+    @Test
+    public void strings_areEscaped() {
+        McpJsonWriter out = new McpJsonWriter();
+        out.beginArray().value("a\"b\\c\nd\u0001e\u2028").value((String) null).endArray();
+        assertEquals("[\"a\\\"b\\\\c\\nd\\u0001e\\u2028\",null]", out.toString());
+    }
+
+    @Test
+    public void numbers_matchJsonObject() {
+        McpJsonWriter out = new McpJsonWriter();
+        out.beginArray().value(3.0).value(0.5).value(-7L).value(Long.MAX_VALUE).endArray();
+        assertEquals("[3,0.5,-7," + Long.MAX_VALUE + "]", out.toString());
+        try {
+            out.value(Double.NaN);
+            fail("Accepted NaN");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void rawValues_areEmbedded() {
+        McpJsonWriter out = new McpJsonWriter();
+        out.beginObject().name("responses").beginArray().rawValue("{\"id\":\"a\"}").rawValue("{\"id\":\"b\"}")
+                .endArray().endObject();
+        assertEquals("{\"responses\":[{\"id\":\"a\"},{\"id\":\"b\"}]}", out.toString());
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.mcpdemo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the latency histogram
+ */
+public class McpLatencyHistogramTest {
+
+    @Test
+    public void buckets_coverValuesWithBoundedError() {
+        int previous = -1;
+        for (long value = 0; value < (1L << 42); value = value < 100 ? value + 1 : value + value / 7) {
+            int bucket = McpLatencyHistogram.bucketOf(value);
+            assertTrue("value " + value, bucket >= previous);
+            previous = bucket;
+            long upper = McpLatencyHistogram.upperBound(bucket);
+            if (value < (1L << 41)) {
+                assertTrue("value " + value + " above its bucket " + upper, value <= upper);
+                assertTrue("value " + value + " bucket too wide " + upper, upper - value <= value / 8);
+            }
+        }
+    }
+
+    @Test
+    public void quantiles_areWithinOneBucket() {
+        McpLatencyHistogram histogram = new McpLatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        assertEquals(1000, histogram.count());
+        assertEquals(1_000_000, histogram.max());
+        assertEquals(500_500, histogram.mean());
+        assertWithin(500_000, histogram.quantile(0.5));
+        assertWithin(990_000, histogram.quantile(0.99));
+        assertEquals(1_000_000, histogram.quantile(1.0));
+    }
+
+    @Test
+    public void emptyHistogram_reportsZero() {
+        McpLatencyHistogram histogram = new McpLatencyHistogram();
+        assertEquals(0, histogram.quantile(0.5));
+        assertEquals(0, histogram.mean());
+        histogram.record(-5);
+        assertEquals(0, histogram.max());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual,
+                actual >= expected && actual <= expected + expected / 8);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.mcpdemo;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the per-caller token buckets
+ */
+public class McpRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    @Test
+    public void burst_thenRefillRate() {
+        McpRateLimiter limiter = new McpRateLimiter(2, 4, now::get);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, limiter.tryAcquire("agent", 1));
+        }
+        // Two tokens per second: the next one is half a second away
+        assertEquals(500, limiter.tryAcquire("agent", 1));
+        now.addAndGet(500);
+        assertEquals(0, limiter.tryAcquire("agent", 1));
+        assertTrue(limiter.tryAcquire("agent", 1) > 0);
+    }
+
+    @Test
+    public void callers_haveSeparateBuckets() {
+        McpRateLimiter limiter = new McpRateLimiter(1, 2, now::get);
+        assertEquals(0, limiter.tryAcquire("noisy", 2));
+        assertTrue(limiter.tryAcquire("noisy", 1) > 0);
+        assertEquals(0, limiter.tryAcquire("quiet", 1));
+    }
+
+    @Test
+    public void cost_isWeighedAndCappedAtBurst() {
+        McpRateLimiter limiter = new McpRateLimiter(1, 4, now::get);
+        assertEquals(0, limiter.tryAcquire("agent", 3));
+        // One token left, three more needed
+        assertEquals(3000, limiter.tryAcquire("agent", 4));
+        now.addAndGet(3000);
+        // A cost above the burst asks for a full bucket instead of never passing
+        assertEquals(0, limiter.tryAcquire("agent", 10));
+    }
+
+    @Test
+    public void idleCallers_areForgotten() {
+        McpRateLimiter limiter = new McpRateLimiter(10, 1, now::get);
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire("agent" + i, 1);
+            now.addAndGet(1000);
+        }
+        assertTrue(limiter.callers() <= 65);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.mcpdemo;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the request replay cache
+ */
+public class McpReplayCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @Test
+    public void repeat_isReplayedUntilExpiry() {
+        McpReplayCache<String> cache = new McpReplayCache<>(8, 1000, now::get, result -> true);
+        assertEquals("r1", cache.execute("a", () -> "r" + runs.incrementAndGet()));
+        now.set(999);
+        assertEquals("r1", cache.execute("a", () -> "r" + runs.incrementAndGet()));
+        now.set(1000);
+        assertEquals("r2", cache.execute("a", () -> "r" + runs.incrementAndGet()));
+    }
+
+    @Test
+    public void unretainedResultsAndFailures_runAgain() {
+        McpReplayCache<String> cache = new McpReplayCache<>(8, 1000, now::get, result -> !result.startsWith("busy"));
+        assertEquals("busy1", cache.execute("a", () -> "busy" + runs.incrementAndGet()));
+        assertEquals("busy2", cache.execute("a", () -> "busy" + runs.incrementAndGet()));
+        try {
+            cache.execute("b", () -> {
+                throw new IllegalStateException("boom");
+            });
+            fail("Swallowed the failure");
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+        assertEquals("ok", cache.execute("b", () -> "ok"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void leastRecentlyUsed_isEvicted() {
+        McpReplayCache<String> cache = new McpReplayCache<>(2, 1000, now::get, result -> true);
+        cache.execute("a", () -> "a" + runs.incrementAndGet());
+        cache.execute("b", () -> "b" + runs.incrementAndGet());
+        // Touch a, so b is the least recently used
+        assertEquals("a1", cache.execute("a", () -> "a" + runs.incrementAndGet()));
+        cache.execute("c", () -> "c" + runs.incrementAndGet());
+        assertEquals(2, cache.size());
+        assertEquals("a1", cache.execute("a", () -> "a" + runs.incrementAndGet()));
+        assertEquals("b4", cache.execute("b", () -> "b" + runs.incrementAndGet()));
+    }
+
+    @Test
+    public void concurrentRepeats_attachToRunningExecution() throws Exception {
+        McpReplayCache<String> cache = new McpReplayCache<>(8, 1000, now::get, result -> false);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> first = pool.submit(() -> cache.execute("a", () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return "r" + runs.incrementAndGet();
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<?>[] repeats = new Future<?>[3];
+            for (int i = 0; i < repeats.length; i++) {
+                repeats[i] = pool.submit(() -> cache.execute("a", () -> "r" + runs.incrementAndGet()));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            assertEquals("r1", first.get(5, TimeUnit.SECONDS));
+            for (Future<?> repeat : repeats) {
+                assertEquals("r1", repeat.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, runs.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
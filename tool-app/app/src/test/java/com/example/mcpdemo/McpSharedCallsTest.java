@@ -0,0 +1,50 @@
+package com.example.mcpdemo;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for coalesced read-only calls
+ */
+public class McpSharedCallsTest {
+
+    @Test
+    public void key_ignoresFieldOrder() throws Exception {
+        assertEquals(McpSharedCalls.key("query", new JSONObject("{\"a\":1,\"b\":\"x\"}")),
+                McpSharedCalls.key("query", new JSONObject("{\"b\":\"x\",\"a\":1}")));
+    }
+
+    @Test
+    public void key_distinguishesCapabilitiesAndValueTypes() throws Exception {
+        String number = McpSharedCalls.key("query", new JSONObject("{\"a\":1}"));
+        assertNotEquals(number, McpSharedCalls.key("query", new JSONObject("{\"a\":\"1\"}")));
+        assertNotEquals(number, McpSharedCalls.key("stats", new JSONObject("{\"a\":1}")));
+        assertNotEquals(McpSharedCalls.key("query", new JSONObject("{\"a\":\"b\",\"c\":\"d\"}")),
+                McpSharedCalls.key("query", new JSONObject("{\"a\":\"b\\\",\\\"c\\\":\\\"d\"}")));
+    }
+
+    @Test
+    public void withId_putsCallerIdIntoSharedResponse() {
+        String shared = "{\"id\":\"\",\"status\":\"success\",\"message\":\"ok\"}";
+        assertEquals("{\"id\":\"r1\",\"status\":\"success\",\"message\":\"ok\"}", McpSharedCalls.withId(shared, "r1"));
+        assertEquals("{\"id\":\"a\\\"b\",\"status\":\"success\",\"message\":\"ok\"}",
+                McpSharedCalls.withId(shared, "a\"b"));
+    }
+
+    @Test
+    public void withId_writesSharedIdPrefix() {
+        McpJsonWriter out = new McpJsonWriter();
+        out.beginObject();
+        out.name("id").value(McpSharedCalls.SHARED_ID);
+        out.name("status").value("success");
+        out.endObject();
+        assertEquals("{\"id\":\"r2\",\"status\":\"success\"}", McpSharedCalls.withId(out.toString(), "r2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withId_rejectsResponseWithOwnId() {
+        McpSharedCalls.withId("{\"id\":\"r1\",\"status\":\"success\"}", "r2");
+    }
+}
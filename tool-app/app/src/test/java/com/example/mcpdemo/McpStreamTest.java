@@ -0,0 +1,54 @@
+package com.example.mcpdemo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for streamed response frames
+ */
+public class McpStreamTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final List<String> frames = new ArrayList<>();
+
+    @Test
+    public void frames_areNumberedAndEndWithFinal() {
+        McpStream stream = new McpStream("r1", "query_clock_in_range", frames::add, now::get);
+        stream.partial(out -> out.name("clocked_in_dates").beginArray().value("2024-01-01").endArray());
+        stream.progress(1, 2);
+        String last = stream.finish("{\"id\":\"r1\",\"status\":\"success\"}");
+
+        assertEquals(2, frames.size());
+        assertEquals("{\"id\":\"r1\",\"seq\":0,\"final\":false,\"status\":\"partial\",\"capability\":"
+                + "{\"id\":\"query_clock_in_range\",\"output\":{\"clocked_in_dates\":[\"2024-01-01\"]}}}", frames.get(0));
+        assertEquals("{\"id\":\"r1\",\"seq\":1,\"final\":false,\"status\":\"progress\",\"progress\":"
+                + "{\"done\":1,\"total\":2}}", frames.get(1));
+        assertEquals("{\"id\":\"r1\",\"status\":\"success\",\"seq\":2,\"final\":true}", last);
+    }
+
+    @Test
+    public void progress_isThrottled() {
+        McpStream stream = new McpStream("r1", "import_clock_in_history", frames::add, now::get);
+        assertTrue(stream.progress(10, -1));
+        assertFalse(stream.progress(20, -1));
+        now.addAndGet(McpStream.PROGRESS_INTERVAL_MS);
+        assertTrue(stream.progress(30, -1));
+        assertEquals(2, frames.size());
+        assertEquals("{\"id\":\"r1\",\"seq\":1,\"final\":false,\"status\":\"progress\",\"progress\":{\"done\":30}}",
+                frames.get(1));
+    }
+
+    @Test
+    public void framesAfterFinish_areDropped() {
+        McpStream stream = new McpStream("r1", "clock_in_stats", frames::add, now::get);
+        assertEquals("{\"id\":\"r1\",\"seq\":0,\"final\":true}", stream.finish("{\"id\":\"r1\"}"));
+        stream.partial(out -> out.name("total_days").value(1));
+        assertFalse(stream.progress(1, 1));
+        assertTrue(frames.isEmpty());
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.mcpdemo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the run-based streak index
+ */
+public class StreakIndexTest {
+
+    @Test
+    public void makeUpInGap_joinsTwoRuns() {
+        StreakIndex index = new StreakIndex();
+        for (int day = 100; day <= 104; day++) {
+            index.add(day);
+        }
+        for (int day = 106; day <= 110; day++) {
+            index.add(day);
+        }
+        assertEquals(2, index.size());
+        assertEquals(5, index.longest());
+        assertEquals(0, index.streakEndingAt(105));
+        assertEquals(5, index.streakEndingAt(110));
+
+        assertTrue(index.add(105));
+        assertFalse(index.add(105));
+        assertEquals(1, index.size());
+        assertEquals(100, index.start(0));
+        assertEquals(110, index.end(0));
+        assertEquals(11, index.longest());
+        assertEquals(11, index.streakEndingAt(110));
+        assertEquals(3, index.streakEndingAt(102));
+    }
+
+    @Test
+    public void outOfOrderAdds_matchBruteForce() {
+        StreakIndex index = new StreakIndex();
+        boolean[] days = new boolean[500];
+        java.util.Random random = new java.util.Random(42);
+        for (int i = 0; i < 400; i++) {
+            int day = random.nextInt(days.length);
+            assertEquals(!days[day], index.add(day));
+            days[day] = true;
+
+            int longest = 0;
+            int run = 0;
+            for (int d = 0; d < days.length; d++) {
+                run = days[d] ? run + 1 : 0;
+                longest = Math.max(longest, run);
+                assertEquals(run, index.streakEndingAt(d));
+            }
+            assertEquals(longest, index.longest());
+        }
+    }
+}